@@ -0,0 +1,245 @@
+package sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A buffer of bytes indexed by a long, for state too large for a single
+ * ByteBuffer, which stops at 2 GB. It is made of ByteBuffers of at most
+ * 2^chunkShift bytes each, which may be on the heap, direct (off the heap)
+ * or mapped from a file.
+ *
+ * Ints are read and written in native byte order at byte indexes that are
+ * a multiple of four. A chunk holds a whole number of ints, so such an int
+ * never spans two chunks.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class ChunkedBuffer
+{
+    // 1 GB chunks.
+    private static final int CHUNK_SHIFT = 30;
+
+    private final ByteBuffer[] chunks;
+    private final long size;
+    private final int chunkShift;
+    private final int chunkMask;
+
+    /**
+     * Create a zeroed buffer.
+     * @param size The size in bytes.
+     * @param direct true to hold it off the heap.
+     */
+    public ChunkedBuffer(long size, boolean direct)
+    {
+        this(size, direct, CHUNK_SHIFT);
+    }
+
+    /**
+     * Create a zeroed buffer with chunks of the given size, for testing.
+     */
+    ChunkedBuffer(long size, boolean direct, int chunkShift)
+    {
+        this(size, chunkShift);
+        for(int i = 0; i < chunks.length; i++) {
+            int length = chunkLength(i);
+            chunks[i] = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+            chunks[i].order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private ChunkedBuffer(long size, int chunkShift)
+    {
+        if(size < 0 || chunkShift < 2 || chunkShift > CHUNK_SHIFT) {
+            throw new IllegalArgumentException("Bad buffer size: " + size);
+        }
+        this.size = size;
+        this.chunkShift = chunkShift;
+        chunkMask = (1 << chunkShift) - 1;
+        chunks = new ByteBuffer[(int) ((size + chunkMask) >>> chunkShift)];
+    }
+
+    /**
+     * Map the whole of a file read-only, a chunk at a time.
+     * @param channel The open file.
+     * @return The mapped buffer.
+     */
+    public static ChunkedBuffer map(FileChannel channel) throws IOException
+    {
+        ChunkedBuffer mapped = new ChunkedBuffer(channel.size(), CHUNK_SHIFT);
+        for(int i = 0; i < mapped.chunks.length; i++) {
+            mapped.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                           (long) i << CHUNK_SHIFT, mapped.chunkLength(i));
+            mapped.chunks[i].order(ByteOrder.nativeOrder());
+        }
+        return mapped;
+    }
+
+    /**
+     * @return The length of the given chunk; only the last may be short.
+     */
+    private int chunkLength(int chunk)
+    {
+        return (int) Math.min(1L << chunkShift, size - ((long) chunk << chunkShift));
+    }
+
+    /**
+     * @return The size in bytes.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    public byte get(long index)
+    {
+        return chunks[(int) (index >>> chunkShift)].get((int) index & chunkMask);
+    }
+
+    public void put(long index, byte value)
+    {
+        chunks[(int) (index >>> chunkShift)].put((int) index & chunkMask, value);
+    }
+
+    /**
+     * @param index A byte index that is a multiple of four.
+     */
+    public int getInt(long index)
+    {
+        return chunks[(int) (index >>> chunkShift)].getInt((int) index & chunkMask);
+    }
+
+    /**
+     * @param index A byte index that is a multiple of four.
+     */
+    public void putInt(long index, int value)
+    {
+        chunks[(int) (index >>> chunkShift)].putInt((int) index & chunkMask, value);
+    }
+
+    /**
+     * Read count ints, starting at a byte index that is a multiple of four.
+     */
+    public void getInts(long index, int[] dest, int count)
+    {
+        int done = 0;
+        while(done < count) {
+            int n = Math.min(count - done, ints(index));
+            slice(index).asIntBuffer().get(dest, done, n);
+            done += n;
+            index += (long) n * Integer.BYTES;
+        }
+    }
+
+    /**
+     * Write count ints, starting at a byte index that is a multiple of four.
+     */
+    public void putInts(long index, int[] src, int count)
+    {
+        int done = 0;
+        while(done < count) {
+            int n = Math.min(count - done, ints(index));
+            slice(index).asIntBuffer().put(src, done, n);
+            done += n;
+            index += (long) n * Integer.BYTES;
+        }
+    }
+
+    public void getBytes(long index, byte[] dest, int count)
+    {
+        int done = 0;
+        while(done < count) {
+            int n = (int) Math.min(count - done, bytes(index));
+            slice(index).get(dest, done, n);
+            done += n;
+            index += n;
+        }
+    }
+
+    public void putBytes(long index, byte[] src, int count)
+    {
+        int done = 0;
+        while(done < count) {
+            int n = (int) Math.min(count - done, bytes(index));
+            slice(index).put(src, done, n);
+            done += n;
+            index += n;
+        }
+    }
+
+    /**
+     * Copy count bytes from one buffer to another; the two must not be
+     * the same buffer.
+     */
+    public static void copy(ChunkedBuffer from, long fromIndex,
+                            ChunkedBuffer to, long toIndex, long count)
+    {
+        while(count > 0) {
+            int n = (int) Math.min(count, Math.min(from.bytes(fromIndex), to.bytes(toIndex)));
+            ByteBuffer source = from.slice(fromIndex);
+            source.limit(n);
+            to.slice(toIndex).put(source);
+            count -= n;
+            fromIndex += n;
+            toIndex += n;
+        }
+    }
+
+    /**
+     * Set count bytes to zero.
+     */
+    public void clear(long index, long count)
+    {
+        byte[] zeros = new byte[(int) Math.min(count, 1 << 16)];
+        while(count > 0) {
+            int n = (int) Math.min(count, zeros.length);
+            putBytes(index, zeros, n);
+            count -= n;
+            index += n;
+        }
+    }
+
+    /**
+     * Write the whole buffer to a file, from the channel's position.
+     */
+    public void writeTo(FileChannel channel) throws IOException
+    {
+        for(ByteBuffer chunk : chunks) {
+            ByteBuffer source = chunk.duplicate();
+            source.clear();
+            while(source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+
+    /**
+     * @return A view of the rest of the chunk from the given byte index,
+     *         in native byte order.
+     */
+    private ByteBuffer slice(long index)
+    {
+        ByteBuffer chunk = chunks[(int) (index >>> chunkShift)].duplicate();
+        chunk.clear().position((int) index & chunkMask);
+        return chunk.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return The number of bytes from the given index to the end of its chunk.
+     */
+    private long bytes(long index)
+    {
+        return chunks[(int) (index >>> chunkShift)].capacity() - ((int) index & chunkMask);
+    }
+
+    /**
+     * @return The number of whole ints from the given index to the end of its chunk.
+     */
+    private int ints(long index)
+    {
+        return (int) (bytes(index) / Integer.BYTES);
+    }
+}
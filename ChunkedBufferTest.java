@@ -0,0 +1,109 @@
+package sim;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * The test class ChunkedBufferTest.
+ *
+ * Chunks of 16 bytes stand in for the 1 GB ones, so that every read and
+ * write crosses from one chunk to the next.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class ChunkedBufferTest
+{
+    private static final int SHIFT = 4;
+
+    @Test
+    public void intsAndBytesKeepTheirValues()
+    {
+        for(boolean direct : new boolean[] { false, true }) {
+            ChunkedBuffer buffer = new ChunkedBuffer(100 * Integer.BYTES + 3, direct, SHIFT);
+            for(int i = 0; i < 100; i++) {
+                buffer.putInt((long) i * Integer.BYTES, i * 1000 - 7);
+            }
+            buffer.put(400, (byte) -1);
+            buffer.put(402, (byte) 9);
+            for(int i = 0; i < 100; i++) {
+                assertEquals(i * 1000 - 7, buffer.getInt((long) i * Integer.BYTES));
+            }
+            assertEquals(-1, buffer.get(400));
+            assertEquals(0, buffer.get(401));
+            assertEquals(9, buffer.get(402));
+        }
+    }
+
+    @Test
+    public void bulkIntsCrossChunks()
+    {
+        ChunkedBuffer buffer = new ChunkedBuffer(200, true, SHIFT);
+        int[] values = new int[30];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = -i;
+        }
+        buffer.putInts(12, values, values.length);
+        assertEquals(-1, buffer.getInt(16));
+        int[] back = new int[30];
+        buffer.getInts(12, back, back.length);
+        assertArrayEquals(values, back);
+    }
+
+    @Test
+    public void bulkBytesCrossChunks()
+    {
+        ChunkedBuffer buffer = new ChunkedBuffer(100, false, SHIFT);
+        byte[] values = new byte[41];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = (byte) (i + 1);
+        }
+        buffer.putBytes(7, values, values.length);
+        byte[] back = new byte[41];
+        buffer.getBytes(7, back, back.length);
+        assertArrayEquals(values, back);
+        assertEquals(0, buffer.get(6));
+        assertEquals(0, buffer.get(48));
+    }
+
+    @Test
+    public void copyBetweenDifferentOffsets()
+    {
+        ChunkedBuffer from = new ChunkedBuffer(64, false, SHIFT);
+        ChunkedBuffer to = new ChunkedBuffer(80, true, SHIFT);
+        for(int i = 0; i < 64; i++) {
+            from.put(i, (byte) i);
+        }
+        ChunkedBuffer.copy(from, 5, to, 11, 50);
+        for(int i = 0; i < 50; i++) {
+            assertEquals(5 + i, to.get(11 + i));
+        }
+        assertEquals(0, to.get(10));
+        assertEquals(0, to.get(61));
+    }
+
+    @Test
+    public void clearZeroesOnlyTheRange()
+    {
+        ChunkedBuffer buffer = new ChunkedBuffer(64, true, SHIFT);
+        for(int i = 0; i < 64; i++) {
+            buffer.put(i, (byte) 1);
+        }
+        buffer.clear(3, 40);
+        assertEquals(1, buffer.get(2));
+        assertEquals(0, buffer.get(3));
+        assertEquals(0, buffer.get(42));
+        assertEquals(1, buffer.get(43));
+    }
+
+    @Test
+    public void lastChunkMayBeShort()
+    {
+        ChunkedBuffer buffer = new ChunkedBuffer(37, true, SHIFT);
+        assertEquals(37, buffer.size());
+        buffer.putInt(32, 0x01020304);
+        buffer.put(36, (byte) 5);
+        assertEquals(0x01020304, buffer.getInt(32));
+        assertEquals(5, buffer.get(36));
+    }
+}
@@ -0,0 +1,423 @@
+package sim;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run many independent headless simulations concurrently in one JVM.
+ *
+ * The simulation classes keep shared state in statics (Randomizer),
+ * so every worker thread loads its own copy
+ * of the sim package through an isolating class loader. Runs on
+ * different threads therefore never see each other's statics, and a
+ * run with a given seed always gives the same result.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class EnsembleRunner
+{
+    // The name of the method each isolated copy of this class runs.
+    private static final String RUN_METHOD = "runHeadless";
+
+    private int depth;
+    private int width;
+    private int steps;
+    private int threads;
+    // When to stop a run early; see StopCondition.parse.
+    private String stopSpec = "extinct";
+    // A file to publish frames to, for runs of a single seed; or null.
+    private String framesFile = null;
+    // A rules file for RuleEngine runs; or null to run the Simulator.
+    private String rulesFile = null;
+    // A file to export each run's history to; or null.
+    private String historyFile = null;
+    // Steps between density maps in the history, or 0 for none, and
+    // the side of each square of a map.
+    private int densityInterval = 0;
+    private int densityCell = 0;
+
+    // Every isolated class loader handed out, closed when the runs finish.
+    private final List<URLClassLoader> loaders =
+        Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Create an ensemble runner.
+     * @param depth Depth of each field.
+     * @param width Width of each field.
+     * @param steps The maximum number of steps for each run.
+     * @param threads The number of runs to execute at the same time.
+     */
+    public EnsembleRunner(int depth, int width, int steps, int threads)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set the condition for stopping each run early.
+     * @param stopSpec A description understood by StopCondition.parse.
+     */
+    public void setStopCondition(String stopSpec)
+    {
+        StopCondition.parse(stopSpec);
+        this.stopSpec = stopSpec;
+    }
+
+    /**
+     * Publish every step of the run to a frame file for FrameViewer.
+     * Only one run can publish, so this needs a single seed.
+     * @param framesFile The file, or null for none.
+     */
+    public void setFramesFile(String framesFile)
+    {
+        this.framesFile = framesFile;
+    }
+
+    /**
+     * Run the species and rules in a file on a RuleEngine instead of
+     * running the Simulator. See SpeciesRegistry.load for the format.
+     * @param rulesFile The file, or null to run the Simulator.
+     */
+    public void setRulesFile(String rulesFile) throws IOException
+    {
+        if(rulesFile != null) {
+            SpeciesRegistry.load(rulesFile);
+        }
+        this.rulesFile = rulesFile;
+    }
+
+    /**
+     * Export the history of every run with a HistoryExporter. With more
+     * than one seed, each run writes its own file, named with its seed
+     * before the extension: history.simh becomes history-7.simh.
+     * @param historyFile The file, or null for none.
+     * @param densityInterval Steps between density maps, or 0 for none.
+     * @param densityCell The side of each square of a density map, in cells.
+     */
+    public void setHistoryFile(String historyFile, int densityInterval, int densityCell)
+    {
+        if(densityInterval > 0 && densityCell <= 0) {
+            throw new IllegalArgumentException("A density map needs a cell size");
+        }
+        this.historyFile = historyFile;
+        this.densityInterval = densityInterval;
+        this.densityCell = densityCell;
+    }
+
+    /**
+     * Run one simulation per seed and wait for them all to finish.
+     * @param seeds The seeds of the runs.
+     * @return The result of each run, in the order of the seeds.
+     */
+    public List<RunResult> run(long[] seeds) throws InterruptedException
+    {
+        if(framesFile != null && seeds.length != 1) {
+            throw new IllegalArgumentException("Only a single run can publish frames");
+        }
+        if(framesFile != null && rulesFile != null) {
+            throw new IllegalArgumentException("Runs from a rules file cannot publish frames");
+        }
+        if(historyFile != null && rulesFile != null) {
+            throw new IllegalArgumentException("Runs from a rules file cannot export a history");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // One copy of the sim classes per worker thread.
+        ThreadLocal<Method> runMethod = ThreadLocal.withInitial(this::loadIsolated);
+        try {
+            List<Future<RunResult>> futures = new ArrayList<>();
+            for(long seed : seeds) {
+                String history = historyFile == null || seeds.length == 1
+                    ? historyFile : historyFileFor(seed);
+                futures.add(pool.submit(() -> {
+                    int[][] series = (int[][]) runMethod.get()
+                        .invoke(null, depth, width, seed, steps, stopSpec, framesFile,
+                                rulesFile, history, densityInterval, densityCell);
+                    return new RunResult(seed, series);
+                }));
+            }
+            List<RunResult> results = new ArrayList<>();
+            for(Future<RunResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("Simulation run failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+            closeLoaders();
+        }
+    }
+
+    /**
+     * @return The history file of the run with the given seed.
+     */
+    private String historyFileFor(long seed)
+    {
+        int dot = historyFile.lastIndexOf('.');
+        int separator = Math.max(historyFile.lastIndexOf('/'), historyFile.lastIndexOf('\\'));
+        if(dot <= separator + 1) {
+            return historyFile + "-" + seed;
+        }
+        return historyFile.substring(0, dot) + "-" + seed + historyFile.substring(dot);
+    }
+
+    /**
+     * Summarise a set of runs: how many ended with a species extinct,
+     * and the mean final population of each species.
+     * @param results The results of the runs.
+     * @return A one line description of the ensemble.
+     */
+    public static String getSummary(List<RunResult> results)
+    {
+        return getSummary(results, SpeciesRegistry.standard());
+    }
+
+    /**
+     * Summarise a set of runs of the species in a registry.
+     * @param results The results of the runs.
+     * @param registry The species that were run.
+     * @return A one line description of the ensemble.
+     */
+    public static String getSummary(List<RunResult> results, SpeciesRegistry registry)
+    {
+        int extinct = 0;
+        long[] totals = new long[registry.size()];
+        for(RunResult result : results) {
+            if(result.isExtinct()) {
+                extinct++;
+            }
+            for(int id = 0; id < totals.length; id++) {
+                totals[id] += result.getFinal(id);
+            }
+        }
+        int runs = Math.max(1, results.size());
+        String summary = "Runs: " + results.size()
+            + " Extinction probability: " + ((double) extinct / runs);
+        for(int id = 0; id < totals.length; id++) {
+            summary += " Mean " + registry.get(id).getName() + ": "
+                + ((double) totals[id] / runs);
+        }
+        return summary;
+    }
+
+    /**
+     * Run a single headless simulation and record the population of each
+     * species after every step. This is called reflectively on an
+     * isolated copy of this class, so it only takes and returns JDK types.
+     * @param rulesFile A rules file to run on a RuleEngine, or null to run
+     *                  the Simulator.
+     * @param historyFile A file to export the history to, or null.
+     * @return The series of each species, indexed by species id.
+     */
+    public static int[][] runHeadless(int depth, int width, long seed, int steps,
+                                      String stopSpec, String framesFile, String rulesFile,
+                                      String historyFile, int densityInterval, int densityCell)
+        throws IOException
+    {
+        Simulator sim = null;
+        RuleEngine engine = null;
+        PopulationCounts counts;
+        FramePublisher publisher = null;
+        if(rulesFile != null) {
+            engine = new RuleEngine(SpeciesRegistry.load(rulesFile), depth, width, seed);
+            counts = engine;
+        }
+        else {
+            sim = new Simulator(depth, width, false);
+            if(historyFile != null) {
+                // Attached before the reset, so that step 0 is exported too.
+                sim.setHistoryExporter(new HistoryExporter(
+                    historyFile, sim.getSpeciesRegistry(), sim.getField().getDepth(),
+                    sim.getField().getWidth(), densityInterval, densityCell));
+            }
+            sim.reset(seed);
+            if(framesFile != null) {
+                publisher = new FramePublisher(framesFile, sim.getField().getDepth(),
+                                               sim.getField().getWidth());
+                sim.setFramePublisher(publisher);
+            }
+            counts = sim;
+        }
+        int[][] series = new int[counts.getSpeciesRegistry().size()][steps + 1];
+        for(int id = 0; id < series.length; id++) {
+            series[id][0] = counts.getPopulation(id);
+        }
+        StopCondition recorder = StopCondition.parse(stopSpec);
+        // Record the populations as part of the stop check, so the run
+        // itself goes through simulate().
+        StopCondition recordAndCheck = s -> {
+            for(int id = 0; id < series.length; id++) {
+                series[id][s.getStep()] = s.getPopulation(id);
+            }
+            return recorder.shouldStop(s);
+        };
+        int done = engine != null ? engine.simulate(steps, recordAndCheck)
+                                  : sim.simulate(steps, recordAndCheck);
+        if(publisher != null) {
+            publisher.close();
+        }
+        if(sim != null) {
+            sim.setHistoryExporter(null);
+        }
+        for(int id = 0; id < series.length; id++) {
+            series[id] = Arrays.copyOf(series[id], done + 1);
+        }
+        return series;
+    }
+
+    /**
+     * Load a private copy of the sim classes and find the run method in it.
+     */
+    private Method loadIsolated()
+    {
+        URL source = EnsembleRunner.class.getProtectionDomain()
+                                         .getCodeSource().getLocation();
+        URLClassLoader loader = new IsolatingLoader(new URL[] { source },
+                                    EnsembleRunner.class.getClassLoader());
+        loaders.add(loader);
+        try {
+            Class<?> runner = loader.loadClass(EnsembleRunner.class.getName());
+            return runner.getMethod(RUN_METHOD, int.class, int.class,
+                                    long.class, int.class, String.class, String.class,
+                                    String.class, String.class, int.class, int.class);
+        }
+        catch(ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load isolated simulator", e);
+        }
+    }
+
+    /**
+     * Close every isolated class loader.
+     */
+    private void closeLoaders()
+    {
+        synchronized(loaders) {
+            for(URLClassLoader loader : loaders) {
+                try {
+                    loader.close();
+                }
+                catch(IOException e) {
+                    System.out.println("Error closing class loader: " + e);
+                }
+            }
+            loaders.clear();
+        }
+    }
+
+    /**
+     * The population series of one run.
+     */
+    public static class RunResult
+    {
+        private long seed;
+        // The population after each step, indexed by species id then step.
+        private int[][] series;
+
+        public RunResult(long seed, int[][] series)
+        {
+            this.seed = seed;
+            this.series = series;
+        }
+
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * @return The number of species recorded.
+         */
+        public int getSpecies()
+        {
+            return series.length;
+        }
+
+        /**
+         * @return The population of a species after each step, starting at step 0.
+         */
+        public int[] getSeries(int id)
+        {
+            return series[id];
+        }
+
+        /**
+         * @return The number of steps the run lasted.
+         */
+        public int getSteps()
+        {
+            return series[0].length - 1;
+        }
+
+        /**
+         * @return The population of a species at the end of the run.
+         */
+        public int getFinal(int id)
+        {
+            return series[id][series[id].length - 1];
+        }
+
+        /**
+         * @return true if any species died out.
+         */
+        public boolean isExtinct()
+        {
+            for(int id = 0; id < series.length; id++) {
+                if(getFinal(id) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A class loader that loads the sim package itself instead of asking
+     * its parent first, so each loader holds its own copy of the statics.
+     */
+    static class IsolatingLoader extends URLClassLoader
+    {
+        public IsolatingLoader(URL[] urls, ClassLoader parent)
+        {
+            super(urls, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException
+        {
+            if(!name.startsWith("sim.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized(getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if(c == null) {
+                    try {
+                        c = findClass(name);
+                    }
+                    catch(ClassNotFoundException e) {
+                        c = super.loadClass(name, false);
+                    }
+                }
+                if(resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+    }
+}
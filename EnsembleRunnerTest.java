@@ -0,0 +1,78 @@
+package sim;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * The test class EnsembleRunnerTest.
+ *
+ * Runs from the same seed must give the same populations however many
+ * runs share the JVM and whichever thread they land on.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class EnsembleRunnerTest
+{
+    private static final int DEPTH = 40;
+    private static final int WIDTH = 60;
+    private static final int STEPS = 60;
+
+    @Test
+    public void sameSeedGivesSameSeries() throws InterruptedException
+    {
+        EnsembleRunner runner = new EnsembleRunner(DEPTH, WIDTH, STEPS, 3);
+        List<EnsembleRunner.RunResult> results = runner.run(new long[] { 7, 8, 7, 9, 7 });
+        assertEquals(5, results.size());
+        EnsembleRunner.RunResult first = results.get(0);
+        assertEquals(7, first.getSeed());
+        for(int i : new int[] { 2, 4 }) {
+            EnsembleRunner.RunResult again = results.get(i);
+            assertEquals(first.getSteps(), again.getSteps());
+            for(int id = 0; id < first.getSpecies(); id++) {
+                assertArrayEquals(first.getSeries(id), again.getSeries(id));
+            }
+        }
+    }
+
+    @Test
+    public void seriesDoNotDependOnThreadCount() throws InterruptedException
+    {
+        long[] seeds = { 1, 2, 3, 4 };
+        List<EnsembleRunner.RunResult> alone = new EnsembleRunner(DEPTH, WIDTH, STEPS, 1).run(seeds);
+        List<EnsembleRunner.RunResult> together = new EnsembleRunner(DEPTH, WIDTH, STEPS, 4).run(seeds);
+        for(int i = 0; i < seeds.length; i++) {
+            assertEquals(seeds[i], together.get(i).getSeed());
+            for(int id = 0; id < alone.get(i).getSpecies(); id++) {
+                assertArrayEquals("seed " + seeds[i], alone.get(i).getSeries(id),
+                                  together.get(i).getSeries(id));
+            }
+        }
+    }
+
+    @Test
+    public void differentSeedsDiffer() throws InterruptedException
+    {
+        List<EnsembleRunner.RunResult> results =
+            new EnsembleRunner(DEPTH, WIDTH, STEPS, 2).run(new long[] { 1, 2 });
+        boolean differ = false;
+        for(int id = 0; id < results.get(0).getSpecies(); id++) {
+            differ |= !Arrays.equals(results.get(0).getSeries(id),
+                                     results.get(1).getSeries(id));
+        }
+        assertTrue(differ);
+    }
+
+    @Test
+    public void seriesStartAtStepZero() throws InterruptedException
+    {
+        EnsembleRunner.RunResult result =
+            new EnsembleRunner(DEPTH, WIDTH, STEPS, 1).run(new long[] { 5 }).get(0);
+        assertTrue(result.getSteps() <= STEPS);
+        for(int id = 0; id < result.getSpecies(); id++) {
+            assertEquals(result.getSteps() + 1, result.getSeries(id).length);
+        }
+    }
+}
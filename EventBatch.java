@@ -0,0 +1,99 @@
+package sim;
+
+import java.util.Arrays;
+
+/**
+ * The births, deaths and moves of one simulation step, held in parallel
+ * primitive arrays rather than as one object per event.
+ *
+ * Event i is a getType(i) by an animal of species getSpecies(i). Cells
+ * are numbered row * width + column. A move goes from getFrom(i) to
+ * getTo(i); a birth or death happens at getTo(i), and getFrom(i) is the
+ * parent's cell for a birth and the predator's cell for a death by
+ * predation, otherwise -1.
+ *
+ * A batch is never changed once published, so subscribers may keep it.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public final class EventBatch
+{
+    // Event types.
+    public static final byte BIRTH = 0;
+    public static final byte DEATH_AGE = 1;
+    public static final byte DEATH_STARVATION = 2;
+    public static final byte DEATH_PREDATION = 3;
+    public static final byte DEATH_OVERCROWDING = 4;
+    // A death whose cause the engine does not know.
+    public static final byte DEATH = 5;
+    public static final byte MOVE = 6;
+
+    private final int step;
+    private final int size;
+    private final byte[] types;
+    private final byte[] species;
+    private final int[] from;
+    private final int[] to;
+
+    /**
+     * Make a batch from the first size entries of the given arrays, which
+     * are copied.
+     */
+    EventBatch(int step, int size, byte[] types, byte[] species, int[] from, int[] to)
+    {
+        this.step = step;
+        this.size = size;
+        this.types = Arrays.copyOf(types, size);
+        this.species = Arrays.copyOf(species, size);
+        this.from = Arrays.copyOf(from, size);
+        this.to = Arrays.copyOf(to, size);
+    }
+
+    /**
+     * @return The step the events happened in.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The number of events.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public byte getType(int i)
+    {
+        return types[i];
+    }
+
+    /**
+     * @return The species id of the animal the event happened to.
+     */
+    public int getSpecies(int i)
+    {
+        return species[i];
+    }
+
+    public int getFrom(int i)
+    {
+        return from[i];
+    }
+
+    public int getTo(int i)
+    {
+        return to[i];
+    }
+
+    /**
+     * @return true if the event is a death of any kind.
+     */
+    public boolean isDeath(int i)
+    {
+        return types[i] != BIRTH && types[i] != MOVE;
+    }
+}
@@ -0,0 +1,108 @@
+package sim;
+
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * A Flow.Publisher of the births, deaths and moves in a simulation, one
+ * EventBatch per step.
+ *
+ * The engine records each event into growable primitive arrays and hands
+ * them over as a batch at the end of the step, so it allocates a few
+ * arrays per step rather than an object per event. Delivery goes through
+ * a SubmissionPublisher: each subscriber has its own buffer of batches
+ * and asks for more with request(), and when a buffer is full the engine
+ * waits for that subscriber to catch up. While nobody is subscribed the
+ * engine skips recording altogether.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class EventStream implements Flow.Publisher<EventBatch>, AutoCloseable
+{
+    private static final int INITIAL_EVENTS = 4096;
+
+    private SubmissionPublisher<EventBatch> publisher;
+    // The events of the current step.
+    private int size;
+    private byte[] types = new byte[INITIAL_EVENTS];
+    private byte[] species = new byte[INITIAL_EVENTS];
+    private int[] from = new int[INITIAL_EVENTS];
+    private int[] to = new int[INITIAL_EVENTS];
+
+    /**
+     * Create a stream that delivers batches on the common pool.
+     */
+    public EventStream()
+    {
+        publisher = new SubmissionPublisher<>();
+    }
+
+    /**
+     * Create a stream with a given number of batches buffered per subscriber.
+     * @param bufferSize The most batches waiting for any one subscriber.
+     */
+    public EventStream(int bufferSize)
+    {
+        publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), bufferSize);
+    }
+
+    public void subscribe(Flow.Subscriber<? super EventBatch> subscriber)
+    {
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * @return true if anyone is subscribed, so events should be recorded.
+     */
+    public boolean isActive()
+    {
+        return publisher.hasSubscribers();
+    }
+
+    /**
+     * Record one event of the current step.
+     * @param type The event type, from EventBatch.
+     * @param speciesId The species of the animal.
+     * @param fromCell See EventBatch.getFrom.
+     * @param toCell See EventBatch.getTo.
+     */
+    public void record(byte type, int speciesId, int fromCell, int toCell)
+    {
+        if(size == types.length) {
+            int grown = size * 2;
+            types = Arrays.copyOf(types, grown);
+            species = Arrays.copyOf(species, grown);
+            from = Arrays.copyOf(from, grown);
+            to = Arrays.copyOf(to, grown);
+        }
+        types[size] = type;
+        species[size] = (byte) speciesId;
+        from[size] = fromCell;
+        to[size] = toCell;
+        size++;
+    }
+
+    /**
+     * Publish the events recorded since the last call as one batch, and
+     * start recording the next step. Waits if a subscriber's buffer is full.
+     * @param step The step the events belong to.
+     */
+    public void endStep(int step)
+    {
+        if(publisher.hasSubscribers()) {
+            publisher.submit(new EventBatch(step, size, types, species, from, to));
+        }
+        size = 0;
+    }
+
+    /**
+     * Tell every subscriber the stream has ended.
+     */
+    public void close()
+    {
+        publisher.close();
+    }
+}
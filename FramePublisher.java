@@ -0,0 +1,98 @@
+package sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publish the species grid after each step into a memory-mapped file,
+ * so a separate FrameViewer process can watch a run without any Swing
+ * in the simulating JVM.
+ *
+ * The file is a header followed by one species code per cell, row after
+ * row. The header holds a sequence number that is odd while a frame is
+ * being written and even once it is complete; a reader copies the frame
+ * and keeps it only if the sequence was the same even number before and
+ * after. The writer never waits for readers.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class FramePublisher implements Closeable
+{
+    // "FRM1", marking a frame file.
+    static final int MAGIC = 0x46524d31;
+    // Header layout: magic, depth, width, step (ints), sequence (long).
+    static final int DEPTH_OFFSET = 4;
+    static final int WIDTH_OFFSET = 8;
+    static final int STEP_OFFSET = 12;
+    static final int SEQUENCE_OFFSET = 16;
+    static final int HEADER_SIZE = 24;
+
+    // Ordered access to the sequence number in the mapped buffer.
+    static final VarHandle SEQUENCE =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private ByteBuffer frame;
+    private int depth;
+    private int width;
+    private long sequence;
+
+    /**
+     * Create (or overwrite) a frame file for a field of the given size.
+     * @param file The file to write.
+     * @param depth The number of rows in the field.
+     * @param width The number of columns in the field.
+     */
+    public FramePublisher(String file, int depth, int width) throws IOException
+    {
+        this.depth = depth;
+        this.width = width;
+        Path path = Paths.get(file);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) depth * width);
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(DEPTH_OFFSET, depth);
+        buffer.putInt(WIDTH_OFFSET, width);
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, 0L);
+        buffer.putInt(0, MAGIC);
+        frame = buffer.duplicate();
+        frame.position(HEADER_SIZE);
+        frame = frame.slice();
+    }
+
+    /**
+     * Write one frame.
+     * @param step The step the grid belongs to.
+     * @param grid The species grid, which must match the file's size.
+     */
+    public void publish(int step, SpeciesGrid grid)
+    {
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, ++sequence);
+        // Keep the frame's writes from moving ahead of the odd sequence.
+        VarHandle.releaseFence();
+        buffer.putInt(STEP_OFFSET, step);
+        frame.clear();
+        grid.exportRegion(0, 0, depth, width, frame);
+        SEQUENCE.setRelease(buffer, SEQUENCE_OFFSET, ++sequence);
+    }
+
+    /**
+     * Close the file. A viewer keeps showing the last frame.
+     */
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
@@ -0,0 +1,146 @@
+package sim;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.swing.*;
+
+/**
+ * A separate viewer for a run that publishes frames with FramePublisher.
+ *
+ * Usage: java sim.FrameViewer frames.bin
+ *
+ * The viewer maps the frame file read-only and a few times a second
+ * shows the latest complete frame, so the simulation never waits for
+ * it. Empty locations are white; species have their registry colours.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class FrameViewer extends JFrame
+{
+    // How often to look for a new frame.
+    private static final int REFRESH_MILLIS = 40;
+    // Pixels per cell.
+    private static final int CELL_SIZE = 4;
+    private static final int EMPTY_COLOR = Color.white.getRGB();
+    private static final int UNKNOWN_COLOR = Color.gray.getRGB();
+
+    private final String STEP_PREFIX = "Step: ";
+    private MappedByteBuffer buffer;
+    private ByteBuffer frame;
+    private int depth, width;
+    private byte[] codes;
+    private int[] pixels;
+    // Colours indexed by species grid code.
+    private int[] colors;
+    private BufferedImage image;
+    private JLabel stepLabel;
+    private JPanel gridPanel;
+    private long shownSequence = -1;
+
+    /**
+     * Open a frame file and start showing it.
+     * @param file The file written by a FramePublisher.
+     */
+    public FrameViewer(String file) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        if(buffer.getInt(0) != FramePublisher.MAGIC) {
+            throw new IOException(file + " is not a frame file");
+        }
+        depth = buffer.getInt(FramePublisher.DEPTH_OFFSET);
+        width = buffer.getInt(FramePublisher.WIDTH_OFFSET);
+        frame = buffer.duplicate();
+        frame.position(FramePublisher.HEADER_SIZE);
+        frame = frame.slice();
+        SpeciesRegistry registry = SpeciesRegistry.standard();
+        colors = new int[registry.size() + 1];
+        colors[SpeciesGrid.EMPTY] = EMPTY_COLOR;
+        for(int id = 0; id < registry.size(); id++) {
+            colors[registry.get(id).getCode()] = registry.get(id).getRGB();
+        }
+        codes = new byte[depth * width];
+        pixels = new int[depth * width];
+        image = new BufferedImage(width, depth, BufferedImage.TYPE_INT_RGB);
+
+        setTitle("Fox and Rabbit Simulation - " + file);
+        stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
+        gridPanel = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g)
+            {
+                super.paintComponent(g);
+                g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+            }
+        };
+        gridPanel.setPreferredSize(new Dimension(width * CELL_SIZE, depth * CELL_SIZE));
+        Container contents = getContentPane();
+        contents.add(stepLabel, BorderLayout.NORTH);
+        contents.add(gridPanel, BorderLayout.CENTER);
+        pack();
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setVisible(true);
+
+        new Timer(REFRESH_MILLIS, e -> refresh()).start();
+    }
+
+    /**
+     * Show the latest frame, if it is complete and not already shown.
+     */
+    private void refresh()
+    {
+        long before = (long) FramePublisher.SEQUENCE.getAcquire(buffer, FramePublisher.SEQUENCE_OFFSET);
+        if(before == shownSequence || (before & 1) != 0) {
+            // Nothing new, or the writer is part way through a frame.
+            return;
+        }
+        int step = buffer.getInt(FramePublisher.STEP_OFFSET);
+        frame.clear();
+        frame.get(codes);
+        VarHandle.acquireFence();
+        long after = (long) FramePublisher.SEQUENCE.getAcquire(buffer, FramePublisher.SEQUENCE_OFFSET);
+        if(after != before) {
+            // Overwritten while copying; try again next time.
+            return;
+        }
+        shownSequence = before;
+        for(int i = 0; i < codes.length; i++) {
+            int code = codes[i];
+            pixels[i] = code >= 0 && code < colors.length ? colors[code] : UNKNOWN_COLOR;
+        }
+        image.setRGB(0, 0, width, depth, pixels, 0, width);
+        stepLabel.setText(STEP_PREFIX + step);
+        gridPanel.repaint();
+    }
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args)
+    {
+        if(args.length != 1) {
+            System.err.println("Usage: java sim.FrameViewer frames.bin");
+            System.exit(2);
+        }
+        SwingUtilities.invokeLater(() -> {
+            try {
+                new FrameViewer(args[0]);
+            }
+            catch(IOException e) {
+                System.err.println("Error reading frames: " + e);
+                System.exit(1);
+            }
+        });
+    }
+}
@@ -0,0 +1,360 @@
+package sim;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stream the population history of a run to a compact file as the run
+ * goes, for analysis after the run.
+ *
+ * Counts are gathered into blocks of up to BLOCK_STEPS consecutive steps
+ * and each block is written a column at a time: all the counts of one
+ * species, then the next. Within a column each count is stored as the
+ * difference from the one before it, and each difference as a zig-zag
+ * varint, so the small changes from step to step mostly take one byte.
+ * The whole file is then gzipped, which squeezes out the long runs of
+ * zeros left once a species is extinct or steady.
+ *
+ * Optionally, every densityInterval steps, a density map is written too:
+ * the field divided into squares of densityCell x densityCell cells and
+ * the number of each species in each square, stored as differences from
+ * the previous map in the same way.
+ *
+ * The file, inside the gzip, starts with the int 0x53494d48 ("SIMH"),
+ * then as varints the version, the field's depth and width, the density
+ * interval and cell size, and the number of species followed by their
+ * names (UTF). Then come records, each a tag byte: POPULATIONS (first
+ * step and number of steps as varints, then the columns), DENSITY (step,
+ * rows and columns of squares as varints, then a column per species), or
+ * END. Steps that do not follow on from the last one, after a reset for
+ * example, start a new block.
+ *
+ * Run this class with a file name to print a history as CSV.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class HistoryExporter implements Closeable
+{
+    // "SIMH", marking a history file.
+    static final int MAGIC = 0x53494d48;
+    static final int VERSION = 1;
+    // Record tags.
+    static final int END = 0;
+    static final int POPULATIONS = 1;
+    static final int DENSITY = 2;
+    // The most steps held before a block is written.
+    static final int BLOCK_STEPS = 4096;
+
+    private DataOutputStream out;
+    private int species;
+    private int depth;
+    private int width;
+    private int densityInterval;
+    private int densityCell;
+
+    // The block being gathered: its first step, its length and its counts.
+    private int firstStep;
+    private int blockSteps = 0;
+    private int[][] columns;
+    // The previous density map, for the differences.
+    private int[][] lastDensity;
+
+    /**
+     * Create (or overwrite) a history file with counts only.
+     * @param file The file to write.
+     * @param registry The species being run.
+     */
+    public HistoryExporter(String file, SpeciesRegistry registry) throws IOException
+    {
+        this(file, registry, 0, 0, 0, 0);
+    }
+
+    /**
+     * Create (or overwrite) a history file with counts and density maps.
+     * @param file The file to write.
+     * @param registry The species being run.
+     * @param depth The number of rows in the field.
+     * @param width The number of columns in the field.
+     * @param densityInterval Steps between density maps, or 0 for none.
+     * @param densityCell The side of each square of a density map, in cells.
+     */
+    public HistoryExporter(String file, SpeciesRegistry registry, int depth, int width,
+                           int densityInterval, int densityCell) throws IOException
+    {
+        if(densityInterval > 0 && (densityCell <= 0 || depth <= 0 || width <= 0)) {
+            throw new IllegalArgumentException("A density map needs a field and a cell size");
+        }
+        species = registry.size();
+        this.depth = depth;
+        this.width = width;
+        this.densityInterval = Math.max(0, densityInterval);
+        this.densityCell = densityCell;
+        columns = new int[species][BLOCK_STEPS];
+        out = new DataOutputStream(new BufferedOutputStream(
+                  new GZIPOutputStream(Files.newOutputStream(Paths.get(file)))));
+        out.writeInt(MAGIC);
+        writeVarint(VERSION);
+        writeVarint(depth);
+        writeVarint(width);
+        writeVarint(this.densityInterval);
+        writeVarint(densityCell);
+        writeVarint(species);
+        for(int id = 0; id < species; id++) {
+            out.writeUTF(registry.get(id).getName());
+        }
+    }
+
+    /**
+     * Add one step to the history.
+     * @param step The step.
+     * @param populations The population of each species, by id.
+     * @param grid The species grid at that step, for the density maps;
+     *             may be null if there are none.
+     */
+    public void record(int step, int[] populations, SpeciesGrid grid) throws IOException
+    {
+        if(blockSteps > 0 && (step != firstStep + blockSteps || blockSteps == BLOCK_STEPS)) {
+            writeBlock();
+        }
+        if(blockSteps == 0) {
+            firstStep = step;
+        }
+        for(int id = 0; id < species; id++) {
+            columns[id][blockSteps] = populations[id];
+        }
+        blockSteps++;
+        if(densityInterval > 0 && grid != null && step % densityInterval == 0) {
+            writeDensity(step, grid);
+        }
+    }
+
+    /**
+     * Write what is left and finish the file. The file is closed even if
+     * the last of it cannot be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(out == null) {
+            return;
+        }
+        try {
+            if(blockSteps > 0) {
+                writeBlock();
+            }
+            out.writeByte(END);
+        }
+        finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Write the block gathered so far, a column at a time.
+     */
+    private void writeBlock() throws IOException
+    {
+        out.writeByte(POPULATIONS);
+        writeVarint(firstStep);
+        writeVarint(blockSteps);
+        for(int id = 0; id < species; id++) {
+            int[] column = columns[id];
+            int previous = 0;
+            for(int i = 0; i < blockSteps; i++) {
+                writeVarint(zigZag(column[i] - previous));
+                previous = column[i];
+            }
+        }
+        blockSteps = 0;
+    }
+
+    /**
+     * Count each species in each square of the field and write the
+     * differences from the last map.
+     */
+    private void writeDensity(int step, SpeciesGrid grid) throws IOException
+    {
+        int rows = (depth + densityCell - 1) / densityCell;
+        int cols = (width + densityCell - 1) / densityCell;
+        int[][] density = new int[species][rows * cols];
+        for(int row = 0; row < depth; row++) {
+            int base = row / densityCell * cols;
+            for(int col = 0; col < width; col++) {
+                int code = grid.get(row, col);
+                if(code > 0 && code <= species) {
+                    density[code - 1][base + col / densityCell]++;
+                }
+            }
+        }
+        if(lastDensity == null) {
+            lastDensity = new int[species][rows * cols];
+        }
+        out.writeByte(DENSITY);
+        writeVarint(step);
+        writeVarint(rows);
+        writeVarint(cols);
+        for(int id = 0; id < species; id++) {
+            for(int i = 0; i < rows * cols; i++) {
+                writeVarint(zigZag(density[id][i] - lastDensity[id][i]));
+            }
+        }
+        lastDensity = density;
+    }
+
+    private void writeVarint(int value) throws IOException
+    {
+        while((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int zigZag(int value)
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Print a history file as CSV: step and a count per species for every
+     * step; with --density, the density maps instead, one line per square.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 1) {
+            System.err.println("Usage: java sim.HistoryExporter file [--density]");
+            System.exit(2);
+        }
+        boolean density = args.length > 1 && args[1].equals("--density");
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out));
+        try(InputStream file = Files.newInputStream(Paths.get(args[0]))) {
+            read(file, writer, density);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Decode a history file into CSV.
+     * @param file The history file.
+     * @param writer Where to write the CSV.
+     * @param density true for the density maps, false for the counts.
+     */
+    public static void read(InputStream file, BufferedWriter writer, boolean density)
+        throws IOException
+    {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(file)));
+        if(in.readInt() != MAGIC) {
+            throw new IOException("Not a history file");
+        }
+        if(readVarint(in) != VERSION) {
+            throw new IOException("Unknown history file version");
+        }
+        readVarint(in);
+        readVarint(in);
+        readVarint(in);
+        readVarint(in);
+        String[] names = new String[readVarint(in)];
+        for(int id = 0; id < names.length; id++) {
+            names[id] = in.readUTF();
+        }
+        writer.write(density ? "step,row,col" : "step");
+        for(String name : names) {
+            writer.write("," + name);
+        }
+        writer.newLine();
+
+        int[][] columns = new int[names.length][];
+        int[][] lastDensity = null;
+        while(true) {
+            int tag;
+            try {
+                tag = in.readUnsignedByte();
+            }
+            catch(EOFException e) {
+                throw new IOException("History file ends without an END record");
+            }
+            if(tag == END) {
+                return;
+            }
+            if(tag == POPULATIONS) {
+                int first = readVarint(in);
+                int steps = readVarint(in);
+                for(int id = 0; id < names.length; id++) {
+                    columns[id] = new int[steps];
+                    int value = 0;
+                    for(int i = 0; i < steps; i++) {
+                        value += unZigZag(readVarint(in));
+                        columns[id][i] = value;
+                    }
+                }
+                if(!density) {
+                    for(int i = 0; i < steps; i++) {
+                        writer.write(Integer.toString(first + i));
+                        for(int id = 0; id < names.length; id++) {
+                            writer.write("," + columns[id][i]);
+                        }
+                        writer.newLine();
+                    }
+                }
+            }
+            else if(tag == DENSITY) {
+                int step = readVarint(in);
+                int rows = readVarint(in);
+                int cols = readVarint(in);
+                if(lastDensity == null || lastDensity[0].length != rows * cols) {
+                    lastDensity = new int[names.length][rows * cols];
+                }
+                for(int id = 0; id < names.length; id++) {
+                    for(int i = 0; i < rows * cols; i++) {
+                        lastDensity[id][i] += unZigZag(readVarint(in));
+                    }
+                }
+                if(density) {
+                    for(int i = 0; i < rows * cols; i++) {
+                        writer.write(step + "," + i / cols + "," + i % cols);
+                        for(int id = 0; id < names.length; id++) {
+                            writer.write("," + lastDensity[id][i]);
+                        }
+                        writer.newLine();
+                    }
+                }
+            }
+            else {
+                throw new IOException("Unknown record: " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package sim;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The test class HistoryExporterTest.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class HistoryExporterTest
+{
+    @Test
+    public void countsComeBackAsCsv() throws IOException
+    {
+        Path file = Files.createTempFile("history", ".simh");
+        try {
+            HistoryExporter exporter = new HistoryExporter(file.toString(),
+                                                           SpeciesRegistry.standard());
+            for(int step = 0; step < 3; step++) {
+                exporter.record(step, new int[] { 100 + step, 50 - 2 * step }, null);
+            }
+            // A gap, as after a reset, starts a new block.
+            exporter.record(10, new int[] { 7, 0 }, null);
+            exporter.close();
+
+            assertEquals("step,Rabbit,Fox\n"
+                         + "0,100,50\n"
+                         + "1,101,48\n"
+                         + "2,102,46\n"
+                         + "10,7,0\n", read(file, false));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void longRunsSpanBlocks() throws IOException
+    {
+        Path file = Files.createTempFile("history", ".simh");
+        try {
+            HistoryExporter exporter = new HistoryExporter(file.toString(),
+                                                           SpeciesRegistry.standard());
+            int steps = HistoryExporter.BLOCK_STEPS + 10;
+            for(int step = 0; step < steps; step++) {
+                exporter.record(step, new int[] { step, steps - step }, null);
+            }
+            exporter.close();
+
+            String[] lines = read(file, false).split("\n");
+            assertEquals(steps + 1, lines.length);
+            assertEquals("0,0," + steps, lines[1]);
+            assertEquals((steps - 1) + "," + (steps - 1) + ",1", lines[steps]);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void densityMapsCountEachSquare() throws IOException
+    {
+        Path file = Files.createTempFile("history", ".simh");
+        try {
+            SpeciesGrid grid = new SpeciesGrid(3, 4);
+            grid.set(0, 0, (byte) 1);
+            grid.set(1, 1, (byte) 1);
+            grid.set(2, 3, (byte) 2);
+            HistoryExporter exporter = new HistoryExporter(file.toString(),
+                                                           SpeciesRegistry.standard(),
+                                                           3, 4, 2, 2);
+            exporter.record(0, new int[] { 2, 1 }, grid);
+            exporter.record(1, new int[] { 2, 1 }, grid);
+            grid.set(0, 0, (byte) 0);
+            exporter.record(2, new int[] { 1, 1 }, grid);
+            exporter.close();
+
+            assertEquals("step,row,col,Rabbit,Fox\n"
+                         + "0,0,0,2,0\n"
+                         + "0,0,1,0,0\n"
+                         + "0,1,0,0,0\n"
+                         + "0,1,1,0,1\n"
+                         + "2,0,0,1,0\n"
+                         + "2,0,1,0,0\n"
+                         + "2,1,0,0,0\n"
+                         + "2,1,1,0,1\n", read(file, true));
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unfinishedFileIsRejected() throws IOException
+    {
+        Path file = Files.createTempFile("history", ".simh");
+        try {
+            HistoryExporter exporter = new HistoryExporter(file.toString(),
+                                                           SpeciesRegistry.standard());
+            exporter.record(0, new int[] { 1, 1 }, null);
+            exporter.close();
+            // Write the file again without its END record.
+            ByteArrayOutputStream inner = new ByteArrayOutputStream();
+            try(InputStream in = new GZIPInputStream(
+                    new ByteArrayInputStream(Files.readAllBytes(file)))) {
+                in.transferTo(inner);
+            }
+            try(OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                out.write(inner.toByteArray(), 0, inner.size() - 1);
+            }
+            read(file, false);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return The CSV a history file reads back as, with \n line ends.
+     */
+    private static String read(Path file, boolean density) throws IOException
+    {
+        StringWriter csv = new StringWriter();
+        BufferedWriter writer = new BufferedWriter(csv);
+        try(InputStream in = Files.newInputStream(file)) {
+            HistoryExporter.read(in, writer, density);
+        }
+        writer.flush();
+        return csv.toString().replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,106 @@
+package sim;
+
+import java.util.Arrays;
+
+/**
+ * Measure the effect of sorting animals into Z-order on the time taken
+ * by a step, for the Simulator and for RuleEngine.
+ *
+ * Usage: java sim.LocalityBenchmark [depth] [width] [steps] [interval]
+ *
+ * Each engine is run from the same seed without sorting and with a sort
+ * every interval steps, a few times each, after some warm-up steps.
+ * Sorting changes which animals live, so as well as the time per step
+ * the median time per animal step is printed, which is the fairer
+ * comparison.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class LocalityBenchmark
+{
+    private static final int REPEATS = 3;
+    private static final int WARM_UP_STEPS = 50;
+    private static final long SEED = 1;
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int interval = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        System.out.println("Field " + depth + "x" + width + ", " + steps
+                           + " steps, sorting every " + interval + " steps");
+        for(String engine : new String[] { "Simulator", "RuleEngine" }) {
+            for(int sort : new int[] { 0, interval }) {
+                double[] perStep = new double[REPEATS];
+                double[] perAnimal = new double[REPEATS];
+                for(int i = 0; i < REPEATS; i++) {
+                    double[] result = engine.equals("Simulator")
+                        ? timeSimulator(depth, width, steps, sort)
+                        : timeRuleEngine(depth, width, steps, sort);
+                    perStep[i] = result[0];
+                    perAnimal[i] = result[1];
+                }
+                Arrays.sort(perStep);
+                Arrays.sort(perAnimal);
+                System.out.printf("%-10s %-9s %8.3f ms/step %7.1f ns/animal step%n",
+                                  engine, sort == 0 ? "unsorted" : "Z-order",
+                                  perStep[REPEATS / 2], perAnimal[REPEATS / 2]);
+            }
+        }
+    }
+
+    /**
+     * @return The milliseconds per step and nanoseconds per animal step.
+     */
+    private static double[] timeSimulator(int depth, int width, int steps, int sort)
+    {
+        Simulator sim = new Simulator(depth, width, false);
+        sim.reset(SEED);
+        sim.setLocalitySortInterval(sort);
+        sim.simulate(WARM_UP_STEPS, s -> false);
+        long animalSteps = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < steps; i++) {
+            animalSteps += total(sim);
+            sim.simulateOneStep();
+        }
+        return rates(System.nanoTime() - start, steps, animalSteps);
+    }
+
+    /**
+     * @return The milliseconds per step and nanoseconds per animal step.
+     */
+    private static double[] timeRuleEngine(int depth, int width, int steps, int sort)
+    {
+        RuleEngine engine = new RuleEngine(SpeciesRegistry.standardRules(), depth, width, SEED);
+        engine.setLocalitySortInterval(sort);
+        engine.simulate(WARM_UP_STEPS, s -> false);
+        long animalSteps = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < steps; i++) {
+            animalSteps += total(engine);
+            engine.simulateOneStep();
+        }
+        return rates(System.nanoTime() - start, steps, animalSteps);
+    }
+
+    private static long total(PopulationCounts counts)
+    {
+        long total = 0;
+        for(int id = 0; id < counts.getSpeciesRegistry().size(); id++) {
+            total += counts.getPopulation(id);
+        }
+        return total;
+    }
+
+    private static double[] rates(long nanos, int steps, long animalSteps)
+    {
+        return new double[] { nanos / 1e6 / steps, (double) nanos / Math.max(1, animalSteps) };
+    }
+}
@@ -25,16 +25,20 @@ public class SimulatorOutp extends JFrame
     // Color used for objects that have no defined color.
     private static final Color UNKNOWN_COLOR = Color.gray;
 
+    // Fields with more cells than this are shown in a ViewportView of
+    // the given size instead of as text.
+    private static final int TEXT_VIEW_CELLS = 200 * 200;
+    private static final int VIEWPORT_WIDTH = 800;
+    private static final int VIEWPORT_HEIGHT = 600;
+
     private final String STEP_PREFIX = "Step: ";
     private final String POPULATION_PREFIX = "Population: ";
     private JLabel stepLabel, population;
     private FieldView fieldView;
+    private ViewportView viewport;
     
-    // A map for storing colors for participants in the simulation
-    private Map<Class, Color> colors;
-    
-    static Color[] pickColors = { Color.blue, Color.red, Color.green };
-    static int used_colors = 0;
+    // The color of each species, indexed by species id.
+    private Color[] colors;
     
     // A statistics object computing and storing simulation information
     
@@ -47,8 +51,13 @@ public class SimulatorOutp extends JFrame
      */
     public SimulatorOutp(Simulator sim)
     {
-        colors = new LinkedHashMap<>();
         this.sim = sim;
+        // The same colors as every other view: the species' own.
+        SpeciesRegistry registry = sim.getSpeciesRegistry();
+        colors = new Color[registry.size()];
+        for(int id = 0; id < colors.length; id++) {
+            colors[id] = new Color(registry.get(id).getRGB());
+        }
 
         setTitle("Fox and Rabbit Simulation");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
@@ -56,47 +65,53 @@ public class SimulatorOutp extends JFrame
         
         setLocation(100, 50);
         
-        fieldView = new FieldView(sim.getField().getDepth(), 
-                                    sim.getField().getWidth());
-
         Container contents = getContentPane();
+        int depth = sim.getField().getDepth();
+        int width = sim.getField().getWidth();
+        if(depth * width > TEXT_VIEW_CELLS) {
+            viewport = new ViewportView(sim.getSpeciesRegistry(), VIEWPORT_WIDTH, VIEWPORT_HEIGHT);
+            for(int id = 0; id < colors.length; id++) {
+                viewport.setColor(id, colors[id]);
+            }
+            contents.add(viewport, BorderLayout.CENTER);
+        }
+        else {
+            fieldView = new FieldView(depth, width);
+            contents.add(fieldView, BorderLayout.CENTER);
+        }
 
         contents.add(stepLabel, BorderLayout.NORTH);
-        contents.add(fieldView, BorderLayout.CENTER);
         contents.add(population, BorderLayout.SOUTH);
         pack();
         setVisible(true);
-        setResizable(false);
+        setResizable(viewport != null);
     }
     
     /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
+     * Define a color to be used for a given species.
+     * @param speciesId The species id.
+     * @param color The color to be used for the given species.
      */
-    public void setColor(Class animalClass, Color color)
+    public void setColor(int speciesId, Color color)
     {
-        colors.put(animalClass, color);
+        colors[speciesId] = color;
+        if(viewport != null) {
+            viewport.setColor(speciesId, color);
+        }
     }
 
     /**
-     * @return The color to be used for a given class of animal.
+     * @return The color to be used for a given species grid code.
      */
-    private Color getColor(Class animalClass)
+    private Color getColor(byte code)
     {
-        Color col = colors.get(animalClass);
-        if(col == null) {
-            // no color defined for this class
-            if(used_colors >= pickColors.length) used_colors = 0;
-            if( used_colors < pickColors.length ){
-                colors.put(animalClass, pickColors[used_colors++]);
-                return getColor(animalClass);
-            }
-            return UNKNOWN_COLOR;
+        if(code == SpeciesGrid.EMPTY) {
+            return EMPTY_COLOR;
         }
-        else {
-            return col;
+        if(code - 1 < colors.length) {
+            return colors[code - 1];
         }
+        return UNKNOWN_COLOR;
     }
 
     /**
@@ -106,31 +121,29 @@ public class SimulatorOutp extends JFrame
      */
     public void showStatus(String message)
     {
-        int step = sim.getStep();
-        Field field = sim.getField();
+        // One generation for the step, the marks and the counts.
+        SpeciesGrid grid = sim.getSpeciesGrid();
+        int step = grid.getStep();
         
         if(!isVisible()) {
             setVisible(true);
         }
             
         stepLabel.setText(STEP_PREFIX + step);
+        population.setText(POPULATION_PREFIX + message);
 
+        if(viewport != null) {
+            // Only the cells in the window are drawn, when it is painted.
+            viewport.showGrid(grid);
+            return;
+        }
 
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-
-                    fieldView.drawMark(col, row, getColor(animal.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
+        for(int row = 0; row < grid.getDepth(); row++) {
+            for(int col = 0; col < grid.getWidth(); col++) {
+                fieldView.drawMark(col, row, getColor(grid.get(row, col)));
             }
         }
       
-
-        population.setText(POPULATION_PREFIX + message);
         fieldView.doText();
     }
     
@@ -171,9 +184,9 @@ public class SimulatorOutp extends JFrame
 
        private char charForColor(Color color)
        {
-            if( color == Color.RED ) return '+';
-            if( color == Color.BLUE ) return '*';
-            if( color == Color.GREEN ) return 'x';
+            if( color.equals(Color.RED) ) return '+';
+            if( color.equals(Color.BLUE) ) return '*';
+            if( color.equals(Color.GREEN) ) return 'x';
             return ' ';
        }
         
@@ -266,6 +279,8 @@ import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Arrays;
+import java.util.TreeMap;
 import java.awt.Color;
 import java.util.HashMap;
 import javax.swing.JFrame;
@@ -281,7 +296,7 @@ import java.io.BufferedWriter;
  * @version 2016.02.29 (2)
  * @version Mods 2022 E Brown
  */
-public class Simulator
+public class Simulator implements PopulationCounts
 {
     // Constants representing configuration information for the simulation.
     // The default width for the grid.
@@ -307,21 +322,68 @@ public class Simulator
     boolean outpOn = false;
     //new
     boolean logOn = false;
+    boolean chartOn = false;
  
     private SimulatorView view = null;
     private SimulatorOutp outp = null;
     //new
     private SimulatorLog log = null;
-
-
-    private FieldStats stats;
-    //new
-    private int rabbitCount;
-    private int foxCount;
+    private PopulationChart chart = null;
+    // Writes each step's grid for a viewer in another process.
+    private FramePublisher publisher = null;
+    // Receives each step's births, deaths and moves, or null.
+    private EventStream events = null;
+    // While recording events: the animal taking its turn, the cell it
+    // started from (-1 if it was already dead), and whether its own death
+    // has been reported through Mortality during the turn.
+    private Animal acting;
+    private int actFrom;
+    private boolean actingDeathReported;
+    // The seed of the last reset, or null for Randomizer's own seed.
+    private Long seed = null;
+    // True while replaying or running a batch, so the views are only
+    // updated at the end.
+    private boolean batching = false;
+    // Steps between sorting the animals into Z-order; 0 to keep them in
+    // the order they were born.
+    private int sortInterval = 0;
+    // The sort interval set at each step since the last reset. Steps run
+    // again after going back sort as they did the first time.
+    private TreeMap<Integer, Integer> sortIntervals = new TreeMap<>();
+    // Measures the time and allocation of each phase of a step, or null.
+    private StepProfiler profiler = null;
+    // Streams the counts of every step to a file, or null.
+    private HistoryExporter exporter = null;
+    // True while going back to an earlier step, so that the steps run
+    // again are not reported to the event stream, the history file or
+    // the frame publisher a second time.
+    private boolean rewinding = false;
+
+
+    // The species in the simulation; everything per species is indexed by id.
+    private SpeciesRegistry species;
+    // The living population of each species, kept up to date every step.
+    private int[] populations;
+    // The number of samples kept at each resolution of the history.
+    private static final int HISTORY_CAPACITY = 4096;
+    // Population counts over time.
+    private PopulationHistory history;
+    // One species code per cell, rebuilt with the counts into the next
+    // grid and then swapped with the current one, which is not written
+    // until the step after next.
+    private SpeciesGrid nextGrid;
+    private volatile SpeciesGrid grid;
+    // The step number and counts as of the last step, replaced as a whole.
+    private volatile StepSnapshot snapshot;
+    // false until the constructor has finished, so that building a
+    // simulator never builds its views.
+    private boolean constructed = false;
     
     
     /**
-     * Construct a simulation field with default size.
+     * Construct a simulation field with default size. The views are not
+     * built here but the first time the simulation is stepped, reset or
+     * shown with showViews(), on whichever thread does that.
      */
     public Simulator()
     {
@@ -329,6 +391,16 @@ public class Simulator
 
 
     }
+
+    /**
+     * Construct a simulation field with default size, optionally without
+     * views. Views can be added later with showViews().
+     * @param showViews false to start without any views.
+     */
+    public Simulator(boolean showViews)
+    {
+        this(DEFAULT_DEPTH, DEFAULT_WIDTH, showViews);
+    }
     
     /**
      * Create a simulation field with the given size.
@@ -337,6 +409,25 @@ public class Simulator
      */
     public Simulator(int depth, int width)
     {
+        this(depth, width, true);
+    }
+
+    /**
+     * Create a simulation field with the given size, optionally without
+     * any views. A headless simulator never touches Swing, so many of them
+     * can be run side by side (see EnsembleRunner).
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param showViews false to run without any views.
+     */
+    public Simulator(int depth, int width, boolean showViews)
+    {
+        if(!showViews) {
+            viewOn = false;
+            outpOn = false;
+            logOn = false;
+            chartOn = false;
+        }
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
             System.out.println("Using default values.");
@@ -348,45 +439,65 @@ public class Simulator
         animals = new ArrayList<>();
         field = new Field(depth, width);
         //new
-        stats = new FieldStats();
-        rabbitCount = 0;
-        foxCount = 0;
-
-
-
-        // Create a view of the state of each location in the field.
-        createViews();
+        species = SpeciesRegistry.standard();
+        populations = new int[species.size()];
+        history = new PopulationHistory(species.size(), HISTORY_CAPACITY);
+        grid = new SpeciesGrid(depth, width);
+        nextGrid = new SpeciesGrid(depth, width);
         
         // Setup a valid starting point.
         reset();
+        // Everything built from here on sizes its arrays by the species.
+        species.freeze();
+        constructed = true;
 
     }
     
     /** The following methods help decouple views from the simulator and stats methods.
      * If you want to alter the views, turn them on or off in these methods.
      *
-     * Create the stats object and views 
+     * Build any view that is turned on but does not exist yet. Views are
+     * only built the first time they are updated, so a simulator that
+     * never shows anything never loads Swing.
      */
-    private void createViews(){
+    private void ensureViews(){
+        if(!constructed) return;
         // Create a view of the state of each location in the field.
-        stats = new FieldStats();
-        if(viewOn) view = new SimulatorView(this);
-        if(outpOn) outp = new SimulatorOutp(this);
+        if(viewOn && view == null) view = new SimulatorView(this);
+        if(outpOn && outp == null) outp = new SimulatorOutp(this);
 
         //new
-        if(logOn) log = new SimulatorLog(this);
-
+        if(logOn && log == null) log = new SimulatorLog(this);
+        if(chartOn && chart == null) chart = new PopulationChart(this);
+    }
+    
+    /**
+     * Turn on the grid view and show the current state in it. Used to
+     * add views to a simulator that was built without them, for example
+     * off the event thread; call this on the event thread.
+     */
+    public void showViews(){
+        viewOn = true;
+        updateViews();
     }
     
     /** 
      * update the views
      */
     private void updateViews(){ 
-        stats.reset();
-        if(view != null) view.showStatus(stats.getPopulationDetails(field));
-        if(outp != null) outp.showStatus(stats.getPopulationDetails(field));
-        //new
-        if(log != null) log.showStatus(stats.getPopulationDetails(field));
+        if(batching) return;
+        StepProfiler p = profiler;
+        if(p != null) p.begin(StepProfiler.VIEWS);
+        ensureViews();
+        if(view != null || outp != null || log != null || chart != null) {
+            String details = getDetails();
+            if(view != null) view.showStatus(details);
+            if(outp != null) outp.showStatus(details);
+            //new
+            if(log != null) log.showStatus(details);
+            if(chart != null) chart.showStatus(details);
+        }
+        if(p != null) p.end(step);
 
     }
     
@@ -401,6 +512,10 @@ public class Simulator
         //new
         if(log != null) log.setVisible(false);
         if(log != null) log.dispose();
+        if(chart != null) chart.setVisible(false);
+        if(chart != null) chart.dispose();
+        if(profiler != null) profiler.writeReport();
+        setHistoryExporter(null);
 
     }
     
@@ -410,7 +525,7 @@ public class Simulator
      */
     public void runLongSimulation()
     {
-        simulate(4000);
+        simulateBatch(4000, 0, null);
 
     }
     
@@ -421,12 +536,71 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        for(int step = 1; step <= numSteps && stats.isViable(field); step++) {
+        for(int step = 1; step <= numSteps && isViable(); step++) {
             simulateOneStep();
         }
 
 
     }
+
+    /**
+     * Run the simulation from its current state for the given number of steps,
+     * stopping as soon as the given condition is met, or before then if it
+     * ceases to be viable.
+     * @param numSteps The most steps to run for.
+     * @param stop The condition checked after every step.
+     * @return The number of steps actually run.
+     */
+    public int simulate(int numSteps, StopCondition stop)
+    {
+        int done = 0;
+        while(done < numSteps && isViable()) {
+            simulateOneStep();
+            done++;
+            if(stop.shouldStop(this)) {
+                break;
+            }
+        }
+        return done;
+    }
+    
+    /**
+     * Run the simulation for a number of steps without updating the views,
+     * the log or the chart after each one, then update them once with the
+     * state reached. The steps themselves are exactly those of simulate,
+     * which likewise stops early once the simulation ceases to be viable.
+     * @param numSteps The most steps to run for.
+     * @param updateEvery Also update the views every this many steps,
+     *                    or 0 only to update them at the end.
+     * @param stop The condition checked after every step, or null to
+     *             run all the steps.
+     * @return The number of steps actually run.
+     */
+    public int simulateBatch(int numSteps, int updateEvery, StopCondition stop)
+    {
+        boolean wasBatching = batching;
+        batching = true;
+        int done = 0;
+        try {
+            while(done < numSteps && isViable()) {
+                simulateOneStep();
+                done++;
+                if(stop != null && stop.shouldStop(this)) {
+                    break;
+                }
+                if(!wasBatching && updateEvery > 0 && done % updateEvery == 0 && done < numSteps) {
+                    batching = false;
+                    updateViews();
+                    batching = true;
+                }
+            }
+        }
+        finally {
+            batching = wasBatching;
+        }
+        updateViews();
+        return done;
+    }
     
     /**
      * Run the simulation from its current state for a single step.
@@ -435,26 +609,52 @@ public class Simulator
      */
     public void simulateOneStep()
     {
+        long start = System.nanoTime();
+        sortInterval = sortIntervals.floorEntry(step).getValue();
         step++;
 
 
         // Provide space for newborn animals.
         List<Animal> newAnimals = new ArrayList<>(); 
+        boolean recording = events != null && events.isActive() && !rewinding;
+        StepProfiler p = profiler;
+        if(p != null) p.begin(StepProfiler.ACT);
 
         // Let all rabbits act.
+        Mortality.begin(recording ? this : null);
         for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
             Animal animal = it.next();
+            int born = newAnimals.size();
+            if(recording) noteTurn(animal);
+            if(p != null) p.beginAnimal();
             animal.act(newAnimals);
+            if(p != null) p.endAnimal(species.of(animal).getId());
             if(! animal.isAlive()) {
                 it.remove();
             }
+            if(recording) recordTurn(animal, newAnimals, born);
 
         }
+        Mortality.end();
                
         // Add the newly born foxes and rabbits to the main lists.
         animals.addAll(newAnimals);
+        if(p != null) p.end(step);
+        if(sortInterval > 0 && step % sortInterval == 0) {
+            if(p != null) p.begin(StepProfiler.SORT);
+            sortAnimals();
+            if(p != null) p.end(step);
+        }
+        countPopulations();
+        if(recording) {
+            if(p != null) p.begin(StepProfiler.EVENTS);
+            events.endStep(step);
+            if(p != null) p.end(step);
+        }
+        snapshot = new StepSnapshot(step, populations, species, System.nanoTime() - start);
 
         updateViews();
+        if(p != null) p.endStep(step);
 
     }
         
@@ -463,22 +663,290 @@ public class Simulator
      */
     public void reset()
     {
+        seed = null;
         step = 0;
         animals.clear();
         Randomizer.reset();
+        history.clear();
+        sortIntervals.clear();
+        sortIntervals.put(step, sortInterval);
         populate();
+        countPopulations();
+        snapshot = new StepSnapshot(step, populations, species, 0);
         
         // Show the starting state in the view.
         updateViews();
 
 
     }
+
+    /**
+     * Reset the simulation to a starting position drawn from the given seed.
+     * The same seed always gives the same run.
+     * @param seed The seed for the shared random number generator.
+     */
+    public void reset(long seed)
+    {
+        this.seed = seed;
+        step = 0;
+        animals.clear();
+        Randomizer.reset();
+        Randomizer.getRandom().setSeed(seed);
+        history.clear();
+        sortIntervals.clear();
+        sortIntervals.put(step, sortInterval);
+        populate();
+        countPopulations();
+        snapshot = new StepSnapshot(step, populations, species, 0);
+
+        updateViews();
+    }
+
+    /**
+     * Bring the simulation to the given step, as rewindTo does, then
+     * update the views once with the step reached.
+     * @param target The step to go to.
+     */
+    public void replayTo(int target)
+    {
+        rewindTo(target);
+        updateViews();
+    }
+
+    /**
+     * Bring the simulation to the given step, which may be before the
+     * current one, without updating the views. A run is fully determined
+     * by its seed and the sort intervals set along the way, so going back
+     * resets to the seed of the last reset, keeping the sort intervals,
+     * and runs forward again. The steps run again are not reported to the event
+     * stream, the history file or the frame publisher, which have seen
+     * them already; the frame publisher is sent the step reached.
+     *
+     * The views are not touched, so this can be called off the event
+     * thread while nothing else uses the simulator.
+     * @param target The step to go to.
+     */
+    public void rewindTo(int target)
+    {
+        if(target < 0) {
+            throw new IllegalArgumentException("No such step: " + target);
+        }
+        boolean back = target < step;
+        boolean wasBatching = batching;
+        batching = true;
+        rewinding = back;
+        try {
+            if(back) {
+                TreeMap<Integer, Integer> intervals = new TreeMap<>(sortIntervals);
+                if(seed == null) {
+                    reset();
+                }
+                else {
+                    reset(seed);
+                }
+                sortIntervals = intervals;
+            }
+            while(step < target) {
+                simulateOneStep();
+            }
+            sortInterval = sortIntervals.floorEntry(step).getValue();
+        }
+        finally {
+            rewinding = false;
+            batching = wasBatching;
+        }
+        if(back && publisher != null) publisher.publish(step, grid);
+    }
+
+    /**
+     * Sort the animals every given number of steps so that the next steps
+     * visit them in Z-order, a block of the field at a time, rather than
+     * jumping about the field in the order they were born. The order in
+     * which animals act changes the run, but a given seed and interval
+     * always give the same run. Any intervals set at later steps before
+     * going back are dropped, since the run now takes another course.
+     * @param interval Steps between sorts, or 0 never to sort.
+     */
+    public void setLocalitySortInterval(int interval){
+        sortInterval = Math.max(0, interval);
+        sortIntervals.tailMap(step, false).clear();
+        sortIntervals.put(step, sortInterval);
+    }
+
+    /**
+     * Put the animals in Z-order of their locations. Animals at the same
+     * place keep their order, and any without a location go last.
+     */
+    private void sortAnimals()
+    {
+        int n = animals.size();
+        long[] keys = new long[n];
+        for(int i = 0; i < n; i++) {
+            Location at = animals.get(i).getLocation();
+            long key = at == null ? 0xffffffffL
+                                  : Integer.toUnsignedLong(ZOrder.encode(at.getRow(), at.getCol()));
+            keys[i] = key << 31 | i;
+        }
+        Arrays.sort(keys);
+        List<Animal> sorted = new ArrayList<>(n);
+        for(long key : keys) {
+            sorted.add(animals.get((int) (key & Integer.MAX_VALUE)));
+        }
+        animals = sorted;
+    }
+
+    /**
+     * Before an animal's turn, note which animal it is and where it is.
+     */
+    private void noteTurn(Animal animal)
+    {
+        acting = animal;
+        actingDeathReported = false;
+        Location at = animal.isAlive() ? animal.getLocation() : null;
+        actFrom = at == null ? -1 : at.getRow() * field.getWidth() + at.getCol();
+    }
+
+    /**
+     * Record a death as the animal classes report it through Mortality,
+     * just before the animal is set dead: at its cell, with its cause,
+     * and with the predator's cell for a death by predation.
+     */
+    void recordDeath(Animal animal, byte cause, Animal predator)
+    {
+        Location at = animal.getLocation();
+        if(at == null) {
+            return;
+        }
+        int width = field.getWidth();
+        Location by = predator == null ? null : predator.getLocation();
+        events.record(cause, species.of(animal).getId(),
+                      by == null ? -1 : by.getRow() * width + by.getCol(),
+                      at.getRow() * width + at.getCol());
+        if(animal == acting) {
+            actingDeathReported = true;
+        }
+    }
+
+    /**
+     * Report what happened during an animal's turn: the young it bore,
+     * with its cell as the parent's, and its move, or its death if that
+     * was not already reported with its cause through Mortality. An
+     * animal already dead when its turn came was killed, and reported,
+     * during another's turn.
+     * @param newAnimals The newborns of the step so far.
+     * @param born The number of newborns before this turn.
+     */
+    private void recordTurn(Animal animal, List<Animal> newAnimals, int born)
+    {
+        acting = null;
+        if(actFrom < 0) {
+            return;
+        }
+        int width = field.getWidth();
+        for(int i = born; i < newAnimals.size(); i++) {
+            Animal young = newAnimals.get(i);
+            Location at = young.getLocation();
+            if(at != null) {
+                events.record(EventBatch.BIRTH, species.of(young).getId(), actFrom,
+                              at.getRow() * width + at.getCol());
+            }
+        }
+        int id = species.of(animal).getId();
+        Location after = animal.getLocation();
+        if(! animal.isAlive()) {
+            if(! actingDeathReported) {
+                events.record(EventBatch.DEATH, id, -1, actFrom);
+            }
+        }
+        else if(after != null && after.getRow() * width + after.getCol() != actFrom) {
+            events.record(EventBatch.MOVE, id, actFrom, after.getRow() * width + after.getCol());
+        }
+    }
+
+    /**
+     * Recount the living animals of each species and rebuild the species
+     * grid, then add the counts to the history and pass them on.
+     */
+    private void countPopulations()
+    {
+        StepProfiler p = profiler;
+        if(p != null) p.begin(StepProfiler.COUNT);
+        recount();
+        history.record(step, populations);
+        if(exporter != null && !rewinding) export();
+        if(p != null) p.end(step);
+        // Frames go out with every new grid, in batches too, since an
+        // out-of-process viewer is not a view of this simulator.
+        if(publisher != null && !rewinding) publisher.publish(step, grid);
+    }
+
+    /**
+     * Recount the living animals of each species, and rebuild the species
+     * grid. Animals eaten during a step stay in the list until their own
+     * turn comes, so skip the dead ones.
+     *
+     * The counts go into the next grid, which then becomes the current one
+     * in a single write. The rewrite is bracketed by beginWrite() and
+     * endWrite(), so a reader on another thread copying that grid with
+     * copySpeciesGrid can tell that the copy was overwritten.
+     */
+    private void recount()
+    {
+        Arrays.fill(populations, 0);
+        SpeciesGrid building = nextGrid;
+        building.beginWrite();
+        building.clear();
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                Species kind = species.of(animal);
+                Location location = animal.getLocation();
+                populations[kind.getId()]++;
+                building.set(location.getRow(), location.getCol(), kind.getCode());
+            }
+        }
+        building.setGeneration(step, populations);
+        building.endWrite();
+        nextGrid = grid;
+        grid = building;
+    }
+    
+    /**
+     * Add the step just counted to the exported history. If the file
+     * cannot be written, say so, and close it so that what was written
+     * before can still be read, then stop exporting.
+     */
+    private void export()
+    {
+        try {
+            exporter.record(step, populations, grid);
+        }
+        catch(IOException e) {
+            System.out.println("Error writing to file: " + e);
+            setHistoryExporter(null);
+        }
+    }
+    
+    /**
+     * @return true if more than one species is still alive.
+     */
+    public boolean isViable()
+    {
+        int alive = 0;
+        for(int count : populations) {
+            if(count > 0) {
+                alive++;
+            }
+        }
+        return alive > 1;
+    }
     
     /**
      * Randomly populate the field with foxes and rabbits.
      */
     private void populate()
     {
+        StepProfiler p = profiler;
+        if(p != null) p.begin(StepProfiler.POPULATE);
         field.clear();
 
         //new
@@ -521,6 +989,28 @@ public class Simulator
                 // else leave the location empty.
             }
         }
+        registerSpecies();
+        if(p != null) p.end(step);
+    }
+
+    /**
+     * Register the class of any animal the field was populated with that
+     * is not a species yet, so that every animal has one, and make room
+     * for the new species' counts. Newborns are of their parents' class,
+     * so this is only needed after populating. Only the first populate,
+     * in the constructor, can add species; after that the registry is
+     * frozen, and registering an animal of a class it does not know fails.
+     */
+    private void registerSpecies()
+    {
+        int known = species.size();
+        for(Animal animal : animals) {
+            species.registerClassOf(animal);
+        }
+        if(species.size() != known) {
+            populations = new int[species.size()];
+            history = new PopulationHistory(species.size(), HISTORY_CAPACITY);
+        }
     }
     
     /**
@@ -538,10 +1028,107 @@ public class Simulator
     }
     
     /**
-     * Accessor for field stats details.
+     * Accessor for the population history, indexed by species id.
+     */
+    public PopulationHistory getHistory(){
+        return history;
+    }
+    
+    /**
+     * Publish the grid to the given publisher after every step, including
+     * the steps of a batch, or stop publishing if it is null.
+     */
+    public void setFramePublisher(FramePublisher publisher){
+        this.publisher = publisher;
+        if(publisher != null) publisher.publish(step, grid);
+    }
+    
+    /**
+     * Report every birth, death and move to the given stream, one batch
+     * per step; or stop reporting if it is null.
+     */
+    public void setEventStream(EventStream events){
+        this.events = events;
+    }
+    
+    /**
+     * Measure the time and allocation of every phase of a step, and of
+     * populating the field, with the given profiler; or stop measuring
+     * if it is null. Its report is written when the simulation ends.
+     */
+    public void setProfiler(StepProfiler profiler){
+        this.profiler = profiler;
+    }
+    
+    /**
+     * Stream the counts (and any density maps) of every step from now on
+     * to the given exporter, or stop if it is null. An exporter replaced
+     * or removed here, or still attached when the simulation ends, is
+     * closed.
+     */
+    public void setHistoryExporter(HistoryExporter exporter){
+        if(this.exporter != null && this.exporter != exporter) {
+            try {
+                this.exporter.close();
+            } catch (IOException e){
+                System.out.println("Error writing to file: " + e);
+            }
+        }
+        this.exporter = exporter;
+    }
+    
+    /**
+     * Accessor for the profiler, or null if none is attached.
+     */
+    public StepProfiler getProfiler(){
+        return profiler;
+    }
+    
+    /**
+     * Accessor for the species code of every cell, as of the last step.
+     * The grid returned is reused: it is rewritten during the step after
+     * next. Read it directly only on the thread running the simulation;
+     * another thread should take a copy with copySpeciesGrid.
+     */
+    public SpeciesGrid getSpeciesGrid(){
+        return grid;
+    }
+
+    /**
+     * Copy the species grid as of the last step into a grid of the same
+     * size. Safe to call from any thread: if the grid is rewritten while
+     * it is copied, the copy is made again from the newest one.
+     * @param dest The grid to copy into.
+     * @return dest, holding one whole generation.
+     */
+    public SpeciesGrid copySpeciesGrid(SpeciesGrid dest){
+        while(!grid.tryCopyInto(dest)) {
+            Thread.onSpinWait();
+        }
+        return dest;
+    }
+    
+    /**
+     * Accessor for the species taking part.
+     */
+    public SpeciesRegistry getSpeciesRegistry(){
+        return species;
+    }
+    
+    /**
+     * Accessor for the step number, counts and timing of the last step,
+     * which always belong together. Safe to call from any thread.
+     */
+    public StepSnapshot getSnapshot(){
+        return snapshot;
+    }
+    
+    /**
+     * Accessor for field stats details: the population of each species
+     * as of the last step.
      */
     public String getDetails() {
-        return stats.getPopulationDetails(field);
+        return snapshot.getDetails();
     }
     
     public boolean log(String fname){
@@ -569,13 +1156,26 @@ public class Simulator
      */
     public int getRabbitPopulation()
     {
-        int rabbits = 0;
-        for(Animal animal : animals) {
-            if(animal instanceof Rabbit) {
-                rabbits++;
-            }
-        }
-        return rabbits;
+        return populations[SpeciesRegistry.RABBIT];
+    }
+
+    /**
+     * Return the current population of foxes.
+     * @return The number of foxes currently alive.
+     */
+    public int getFoxPopulation()
+    {
+        return populations[SpeciesRegistry.FOX];
+    }
+
+    /**
+     * Return the current population of a species.
+     * @param id The species id.
+     * @return The number of its animals currently alive.
+     */
+    public int getPopulation(int id)
+    {
+        return populations[id];
     }
 
 }
@@ -612,7 +1212,8 @@ public class SimController
     private JButton oneButton;
     private JButton zeroButton;
     private Timer simTimer;
-    private static JFileChooser fileChooser = new JFileChooser(System.getProperty("user.dir"));
+    // Built on first use: a file chooser drags in much of Swing and the file system view.
+    private static JFileChooser fileChooser = null;
     //new
     private static final int DELAY = 100;
     private static final int STEPS = 100;
@@ -623,7 +1224,9 @@ public class SimController
 
     public SimController(){
         makeFrame();
-        sim = new Simulator();
+        // Populate the field off the event thread; the views are added
+        // on the event thread once it is ready.
+        new Thread(this::createSimulator, "Simulator Setup").start();
         simTimer = new Timer(100, e -> doNothing());
         //new
         simTimer.start();
@@ -631,6 +1234,27 @@ public class SimController
 
     }
 
+    /**
+     * Build the simulator off the event thread, then hand it over, or
+     * report on the event thread that it could not be built.
+     */
+    private void createSimulator(){
+        try {
+            Simulator built = new Simulator(false);
+            SwingUtilities.invokeLater(() -> {
+                sim = built;
+                sim.showViews();
+            });
+        }
+        catch(RuntimeException | Error e) {
+            SwingUtilities.invokeLater(() -> {
+                System.out.println("Error setting up the simulator: " + e);
+                JOptionPane.showMessageDialog(frame, "The simulator could not be set up:\n" + e,
+                                              "Sim Control", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
     private void doNothing(){
         System.out.println("This does nothing");
     }
@@ -722,7 +1346,9 @@ public class SimController
         // SHUT DOWN YOUR OWN FRAME AND TIMER HERE
         simTimer.stop();
         frame.dispose();
-        sim.endSimulation();
+        if(sim != null){
+            sim.endSimulation();
+        }
         frame.setVisible(false);
         frame.dispose();
         // System.exit(0);
@@ -746,10 +1372,17 @@ public class SimController
         simTimer.stop();
     }
 
+    private static JFileChooser getFileChooser(){
+        if(fileChooser == null){
+            fileChooser = new JFileChooser(System.getProperty("user.dir"));
+        }
+        return fileChooser;
+    }
+
     public void loadFile(){
-        int returnVal = fileChooser.showOpenDialog(frame);
+        int returnVal = getFileChooser().showOpenDialog(frame);
         if(returnVal == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
+            File file = getFileChooser().getSelectedFile();
             System.out.println("You chose to open this file: " +
                 file.getName());
         }
@@ -759,9 +1392,9 @@ public class SimController
     }
 
     public void saveFile(){
-        int returnVal = fileChooser.showSaveDialog(frame);
+        int returnVal = getFileChooser().showSaveDialog(frame);
         if(returnVal == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
+            File file = getFileChooser().getSelectedFile();
             System.out.println("You chose to save this file: " +
                 file.getName());
         }
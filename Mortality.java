@@ -0,0 +1,88 @@
+package sim;
+
+/**
+ * Where the animal classes say why an animal dies, so that the event
+ * stream carries the real cause of each death.
+ *
+ * An animal that dies calls one of these just before setDead(), while it
+ * still has its location: diedOfAge when it grows too old, starved when
+ * it runs out of food, overcrowded when it has nowhere to go, and eaten,
+ * from the predator's act, for the prey it kills. The Simulator records
+ * the death then and there, with its cause, for the simulation whose
+ * animals are acting on the calling thread. When nothing is recording
+ * events these calls do nothing, so they cost one ThreadLocal read.
+ *
+ * An animal's own death that is not reported here is still recorded at
+ * the end of its turn, as a DEATH of unknown cause. Prey killed without
+ * a call to eaten has no location left to record, so it is not.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public final class Mortality
+{
+    // The simulation recording the deaths of the animals acting on each
+    // thread, if any.
+    private static final ThreadLocal<Simulator> RECORDING = new ThreadLocal<>();
+
+    private Mortality()
+    {
+    }
+
+    /**
+     * Report the deaths of animals acting on this thread to the given
+     * simulation, or to none if it is null, until end() is called.
+     */
+    static void begin(Simulator sim)
+    {
+        RECORDING.set(sim);
+    }
+
+    /**
+     * Stop reporting deaths on this thread.
+     */
+    static void end()
+    {
+        RECORDING.remove();
+    }
+
+    /**
+     * The animal is dying of old age.
+     */
+    public static void diedOfAge(Animal animal)
+    {
+        report(animal, EventBatch.DEATH_AGE, null);
+    }
+
+    /**
+     * The animal is dying of hunger.
+     */
+    public static void starved(Animal animal)
+    {
+        report(animal, EventBatch.DEATH_STARVATION, null);
+    }
+
+    /**
+     * The animal is dying for want of space.
+     */
+    public static void overcrowded(Animal animal)
+    {
+        report(animal, EventBatch.DEATH_OVERCROWDING, null);
+    }
+
+    /**
+     * The prey is being eaten by the predator.
+     */
+    public static void eaten(Animal prey, Animal predator)
+    {
+        report(prey, EventBatch.DEATH_PREDATION, predator);
+    }
+
+    private static void report(Animal animal, byte cause, Animal predator)
+    {
+        Simulator sim = RECORDING.get();
+        if(sim != null) {
+            sim.recordDeath(animal, cause, predator);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package sim;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An end-to-end throughput check for the headless Simulator, to catch a
+ * change that makes a step slower before it is merged.
+ *
+ * Usage:
+ *   java sim.PerformanceSuite [--sizes 120x80,512x512,1024x1024,4096x4096]
+ *                             [--baseline perf-baseline.json] [--tolerance 0.15]
+ *                             [--out results.json] [--record]
+ *
+ * Each size (width x depth) is run from a fixed seed for a fixed number
+ * of steps, and the suite measures steps per second, the time taken by
+ * reset(), the peak heap and the bytes allocated per step. The results
+ * are written as JSON and compared with the baseline file: a case fails
+ * if it is slower, resets more slowly, or allocates more per step than
+ * the baseline by more than the tolerance, and the suite then exits with
+ * status 1. Without a baseline file nothing is compared, and the suite
+ * prints a warning saying so.
+ *
+ * The peak heap is the sum of the peaks of each heap pool (eden,
+ * survivor, old), which need not have been reached at the same moment,
+ * so it is an upper bound on the heap in use. It is only reported, not
+ * compared, since it depends on when the collector happens to run.
+ *
+ * No baseline is checked in, since one only means something on the
+ * machine it was recorded on. To make one, run the suite with --record
+ * on the machine that will run it; the results then go to the baseline
+ * file (--baseline, perf-baseline.json by default) instead of --out,
+ * and later runs there are compared with them.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class PerformanceSuite
+{
+    private static final long SEED = 1;
+    private static final int REPEATS = 3;
+    // Sizes run by default, and how many steps to time at each.
+    private static final String DEFAULT_SIZES = "120x80,512x512,1024x1024,4096x4096";
+    private static final long STEP_CELLS = 50_000_000L;
+    private static final int MAX_STEPS = 1000;
+    private static final int MIN_STEPS = 5;
+
+    private String sizes = DEFAULT_SIZES;
+    private String baseline = "perf-baseline.json";
+    private double tolerance = 0.15;
+    private String out = "perf-results.json";
+    private boolean record = false;
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        System.setProperty("java.awt.headless", "true");
+        PerformanceSuite suite = new PerformanceSuite();
+        try {
+            suite.parse(args);
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java sim.PerformanceSuite [--sizes WxD,...] [--baseline file]"
+                + " [--tolerance fraction] [--out file] [--record]");
+            System.exit(2);
+        }
+        System.exit(suite.run() ? 0 : 1);
+    }
+
+    private void parse(String[] args)
+    {
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--record")) {
+                record = true;
+                continue;
+            }
+            if(i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[++i];
+            switch(args[i - 1]) {
+                case "--sizes":     sizes = value; break;
+                case "--baseline":  baseline = value; break;
+                case "--tolerance": tolerance = Double.parseDouble(value); break;
+                case "--out":       out = value; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+    }
+
+    /**
+     * Run every case, write the results and compare them with the baseline.
+     * @return false if any case regressed.
+     */
+    private boolean run() throws IOException
+    {
+        // Let the JIT settle before anything is timed.
+        measure(120, 80, 200);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for(String size : sizes.split(",")) {
+            String[] parts = size.trim().split("x");
+            int width = Integer.parseInt(parts[0]);
+            int depth = Integer.parseInt(parts[1]);
+            int steps = (int) Math.max(MIN_STEPS, Math.min(MAX_STEPS, STEP_CELLS / ((long) width * depth)));
+            Map<String, Object> result = measure(width, depth, steps);
+            results.add(result);
+            System.out.printf(Locale.ROOT,
+                              "%-10s %6d steps  %10.1f steps/s  reset %8.1f ms  peak heap %6d MB  %10d bytes/step%n",
+                              result.get("name"), steps, (Double) result.get("stepsPerSecond"),
+                              (Double) result.get("resetMillis"),
+                              (Long) result.get("peakHeapBytes") >> 20,
+                              (Long) result.get("allocatedBytesPerStep"));
+        }
+
+        Path baselinePath = Paths.get(baseline);
+        if(record) {
+            Files.writeString(baselinePath, toJson(results));
+            System.out.println("Baseline recorded in " + baselinePath);
+            return true;
+        }
+        Files.writeString(Paths.get(out), toJson(results));
+        if(!Files.exists(baselinePath)) {
+            System.err.println("WARNING: no baseline at " + baselinePath.toAbsolutePath()
+                               + "; nothing was compared. Run with --record to make one.");
+            return true;
+        }
+        return compare(results, readJson(Files.readString(baselinePath)));
+    }
+
+    /**
+     * Time one size: reset, then a run of steps, each repeated, keeping
+     * the median.
+     */
+    private Map<String, Object> measure(int width, int depth, int steps)
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Simulator sim = new Simulator(depth, width, false);
+        double[] resetMillis = new double[REPEATS];
+        double[] rates = new double[REPEATS];
+        long allocated = -1;
+        System.gc();
+        resetPeakHeap();
+        for(int i = 0; i < REPEATS; i++) {
+            long start = System.nanoTime();
+            sim.reset(SEED);
+            resetMillis[i] = (System.nanoTime() - start) / 1e6;
+
+            long allocatedBefore = allocatedBytes(threads);
+            start = System.nanoTime();
+            for(int step = 0; step < steps; step++) {
+                sim.simulateOneStep();
+            }
+            rates[i] = steps / ((System.nanoTime() - start) / 1e9);
+            long allocatedAfter = allocatedBytes(threads);
+            if(allocatedBefore >= 0 && allocatedAfter >= 0) {
+                allocated = (allocatedAfter - allocatedBefore) / steps;
+            }
+        }
+        Arrays.sort(resetMillis);
+        Arrays.sort(rates);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", width + "x" + depth);
+        result.put("width", width);
+        result.put("depth", depth);
+        result.put("steps", steps);
+        result.put("seed", SEED);
+        result.put("stepsPerSecond", rates[REPEATS / 2]);
+        result.put("resetMillis", resetMillis[REPEATS / 2]);
+        result.put("peakHeapBytes", peakHeap());
+        result.put("allocatedBytesPerStep", allocated);
+        return result;
+    }
+
+    /**
+     * Compare results with a baseline and report each case.
+     * @return false if any case is worse than the baseline by more than the tolerance.
+     */
+    private boolean compare(List<Map<String, Object>> results, Map<String, Map<String, String>> base)
+    {
+        boolean passed = true;
+        for(Map<String, Object> result : results) {
+            String name = (String) result.get("name");
+            Map<String, String> expected = base.get(name);
+            if(expected == null) {
+                System.out.println(name + ": not in the baseline");
+                continue;
+            }
+            if(!String.valueOf(result.get("steps")).equals(expected.get("steps"))) {
+                System.out.println(name + ": baseline ran a different number of steps; skipped");
+                continue;
+            }
+            List<String> failures = new ArrayList<>();
+            double rate = (Double) result.get("stepsPerSecond");
+            double baseRate = Double.parseDouble(expected.get("stepsPerSecond"));
+            if(rate < baseRate * (1 - tolerance)) {
+                failures.add(String.format(Locale.ROOT, "steps/s %.1f < %.1f", rate, baseRate));
+            }
+            double reset = (Double) result.get("resetMillis");
+            double baseReset = Double.parseDouble(expected.get("resetMillis"));
+            if(reset > baseReset * (1 + tolerance)) {
+                failures.add(String.format(Locale.ROOT, "reset %.1f ms > %.1f ms", reset, baseReset));
+            }
+            long allocated = (Long) result.get("allocatedBytesPerStep");
+            long baseAllocated = Long.parseLong(expected.get("allocatedBytesPerStep"));
+            if(allocated >= 0 && baseAllocated >= 0 && allocated > baseAllocated * (1 + tolerance)) {
+                failures.add("allocation " + allocated + " > " + baseAllocated + " bytes/step");
+            }
+            if(failures.isEmpty()) {
+                System.out.println(name + ": ok");
+            }
+            else {
+                System.out.println(name + ": REGRESSED: " + String.join(", ", failures));
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * @return Bytes allocated so far by this thread, or -1 if the JVM cannot say.
+     */
+    private static long allocatedBytes(ThreadMXBean threads)
+    {
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void resetPeakHeap()
+    {
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return The sum of the peak use of each heap pool since the last
+     *         reset. The pools may peak at different times, so this is an
+     *         upper bound on the heap in use at any one moment.
+     */
+    private static long peakHeap()
+    {
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Write results as {"cases": [ {...}, ... ]}, one case per line.
+     */
+    private static String toJson(List<Map<String, Object>> results)
+    {
+        StringBuilder json = new StringBuilder("{\n  \"cases\": [\n");
+        for(int i = 0; i < results.size(); i++) {
+            json.append("    {");
+            String separator = "";
+            for(Map.Entry<String, Object> field : results.get(i).entrySet()) {
+                json.append(separator).append('"').append(field.getKey()).append("\": ");
+                Object value = field.getValue();
+                if(value instanceof String) {
+                    json.append('"').append(value).append('"');
+                }
+                else if(value instanceof Double) {
+                    json.append(String.format(Locale.ROOT, "%.3f", (Double) value));
+                }
+                else {
+                    json.append(value);
+                }
+                separator = ", ";
+            }
+            json.append(i < results.size() - 1 ? "},\n" : "}\n");
+        }
+        return json.append("  ]\n}\n").toString();
+    }
+
+    /**
+     * Read the cases of a file written by toJson.
+     * @return The fields of each case, as text, by case name.
+     */
+    private static Map<String, Map<String, String>> readJson(String json)
+    {
+        Map<String, Map<String, String>> cases = new LinkedHashMap<>();
+        Pattern object = Pattern.compile("\\{([^{}]*)\\}");
+        Pattern field = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"?([^,\"}]*)\"?");
+        Matcher objects = object.matcher(json);
+        while(objects.find()) {
+            Map<String, String> fields = new LinkedHashMap<>();
+            Matcher fieldMatcher = field.matcher(objects.group(1));
+            while(fieldMatcher.find()) {
+                fields.put(fieldMatcher.group(1), fieldMatcher.group(2).trim());
+            }
+            if(fields.containsKey("name")) {
+                cases.put(fields.get("name"), fields);
+            }
+        }
+        return cases;
+    }
+}
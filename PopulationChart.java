@@ -0,0 +1,198 @@
+package sim;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import javax.swing.*;
+
+/**
+ * A graphical view of the population of each species over time.
+ *
+ * The chart is drawn into an off-screen image one pixel per step. Each
+ * update scrolls the image left by the number of new steps and draws
+ * only those, so the cost of an update does not depend on how long the
+ * run has been going.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class PopulationChart extends JFrame
+{
+    private static final int CHART_WIDTH = 600;
+    private static final int CHART_HEIGHT = 200;
+    private static final Color BACKGROUND_COLOR = Color.white;
+
+    private final String POPULATION_PREFIX = "Population: ";
+    private JLabel population;
+    private ChartView chartView;
+    private Simulator sim;
+    // The line color of each species, indexed by species id.
+    private Color[] speciesColors;
+
+    /**
+     * Create a chart of the given simulation's population history.
+     * @param sim The simulation to chart.
+     */
+    public PopulationChart(Simulator sim)
+    {
+        this.sim = sim;
+        SpeciesRegistry registry = sim.getSpeciesRegistry();
+        speciesColors = new Color[registry.size()];
+        for(int id = 0; id < speciesColors.length; id++) {
+            speciesColors[id] = new Color(registry.get(id).getRGB());
+        }
+        setTitle("Population Chart");
+        population = new JLabel(POPULATION_PREFIX, JLabel.CENTER);
+        chartView = new ChartView(CHART_WIDTH, CHART_HEIGHT);
+
+        setLocation(100, 500);
+        Container contents = getContentPane();
+        contents.add(chartView, BorderLayout.CENTER);
+        contents.add(population, BorderLayout.SOUTH);
+        pack();
+        setVisible(true);
+    }
+
+    /**
+     * Add the steps recorded since the last update to the chart.
+     * @param message The population details to show under the chart.
+     */
+    public void showStatus(String message)
+    {
+        if(!isVisible()) {
+            setVisible(true);
+        }
+        chartView.update(sim.getHistory());
+        population.setText(POPULATION_PREFIX + message);
+    }
+
+    /**
+     * The chart itself: an image that is scrolled and appended to.
+     */
+    private class ChartView extends JPanel
+    {
+        private BufferedImage image;
+        private int width, height;
+        // The number of history samples already on the chart.
+        private long drawn;
+        // The count drawn at the top of the chart.
+        private int scale = 1;
+        // The last point drawn for each species, to join new points to,
+        // and whether there is one yet.
+        private int[] lastY;
+        private boolean hasLast = false;
+
+        public ChartView(int width, int height)
+        {
+            this.width = width;
+            this.height = height;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            lastY = new int[speciesColors.length];
+            setPreferredSize(new Dimension(width, height));
+            clearImage();
+        }
+
+        /**
+         * Draw whatever the history holds that is not on the chart yet.
+         */
+        public void update(PopulationHistory history)
+        {
+            long written = history.getWritten(0);
+            int size = history.size(0);
+            long fresh = written - drawn;
+            if(fresh == 0) {
+                return;
+            }
+            if(fresh < 0 || fresh >= width || exceedsScale(history, (int) Math.min(fresh, size))) {
+                redraw(history);
+            }
+            else {
+                Graphics2D g = image.createGraphics();
+                // Scroll what is there, and clear the strip for the new steps.
+                g.copyArea((int) fresh, 0, width - (int) fresh, height, (int) -fresh, 0);
+                g.setColor(BACKGROUND_COLOR);
+                g.fillRect(width - (int) fresh, 0, (int) fresh, height);
+                drawPoints(g, history, size - (int) fresh, size, width - (int) fresh, true);
+                g.dispose();
+            }
+            drawn = written;
+            repaint();
+        }
+
+        /**
+         * Redraw the whole chart from the newest samples in the history.
+         */
+        private void redraw(PopulationHistory history)
+        {
+            int size = history.size(0);
+            int count = Math.min(size, width);
+            scale = 1;
+            for(int i = size - count; i < size; i++) {
+                for(int s = 0; s < lastY.length; s++) {
+                    scale = Math.max(scale, history.get(0, i, s));
+                }
+            }
+            // Leave headroom so the scale does not change on every new peak.
+            scale = scale + scale / 4;
+            clearImage();
+            Graphics2D g = image.createGraphics();
+            drawPoints(g, history, size - count, size, width - count, false);
+            g.dispose();
+        }
+
+        /**
+         * @return true if any of the newest samples would go off the top.
+         */
+        private boolean exceedsScale(PopulationHistory history, int fresh)
+        {
+            int size = history.size(0);
+            for(int i = size - fresh; i < size; i++) {
+                for(int s = 0; s < lastY.length; s++) {
+                    if(history.get(0, i, s) > scale) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Draw samples from..to-1 starting at the given x position,
+         * optionally joining the first one to the last point drawn.
+         * A line that is not joined starts at its first point.
+         */
+        private void drawPoints(Graphics2D g, PopulationHistory history,
+                                int from, int to, int x, boolean join)
+        {
+            for(int i = from; i < to; i++, x++) {
+                for(int s = 0; s < lastY.length; s++) {
+                    int y = height - 1 - (int) ((long) history.get(0, i, s) * (height - 1) / scale);
+                    g.setColor(speciesColors[s]);
+                    if(i == from && !(join && hasLast)) {
+                        g.drawLine(x, y, x, y);
+                    }
+                    else {
+                        g.drawLine(x - 1, lastY[s], x, y);
+                    }
+                    lastY[s] = y;
+                }
+            }
+            hasLast = hasLast || to > from;
+        }
+
+        private void clearImage()
+        {
+            Graphics2D g = image.createGraphics();
+            g.setColor(BACKGROUND_COLOR);
+            g.fillRect(0, 0, width, height);
+            g.dispose();
+            hasLast = false;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g)
+        {
+            super.paintComponent(g);
+            g.drawImage(image, 0, 0, null);
+        }
+    }
+}
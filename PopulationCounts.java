@@ -0,0 +1,42 @@
+package sim;
+
+/**
+ * Anything that steps a population and counts it by species id:
+ * the Simulator and the RuleEngine. Stop conditions work on either.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public interface PopulationCounts
+{
+    /**
+     * @return The current step.
+     */
+    int getStep();
+
+    /**
+     * @return The number of living animals of the species with the given id.
+     */
+    int getPopulation(int id);
+
+    /**
+     * @return The species taking part.
+     */
+    SpeciesRegistry getSpeciesRegistry();
+
+    /**
+     * @return true while more than one species is alive, or, when only
+     *         one species takes part, while it is.
+     */
+    default boolean isViable()
+    {
+        int species = getSpeciesRegistry().size();
+        int alive = 0;
+        for(int id = 0; id < species; id++) {
+            if(getPopulation(id) > 0) {
+                alive++;
+            }
+        }
+        return alive >= Math.min(2, species);
+    }
+}
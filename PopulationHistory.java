@@ -0,0 +1,166 @@
+package sim;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size record of the population of each species over time.
+ *
+ * Counts are kept at several resolutions: every step, and the mean of
+ * every 10 and every 100 steps. Each resolution is a ring of primitive
+ * ints that overwrites its oldest samples, so memory use never grows,
+ * while the coarse levels still reach far back into a long run.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class PopulationHistory
+{
+    // The number of steps summarised by one sample at each level.
+    private static final int[] STRIDES = { 1, 10, 100 };
+
+    private int species;
+    private int capacity;
+    // For each level, capacity samples of one count per species.
+    private int[][] samples;
+    // The number of samples ever written at each level.
+    private long[] written;
+    // Running totals for the sample being built at each level.
+    private long[][] sums;
+    private int[] pending;
+    // The step of the most recent record.
+    private int lastStep;
+
+    /**
+     * Create an empty history.
+     * @param species The number of species counted each step.
+     * @param capacity The number of samples kept at each level.
+     */
+    public PopulationHistory(int species, int capacity)
+    {
+        this.species = species;
+        this.capacity = capacity;
+        samples = new int[STRIDES.length][capacity * species];
+        written = new long[STRIDES.length];
+        sums = new long[STRIDES.length][species];
+        pending = new int[STRIDES.length];
+        lastStep = -1;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void clear()
+    {
+        for(int level = 0; level < STRIDES.length; level++) {
+            written[level] = 0;
+            pending[level] = 0;
+            Arrays.fill(sums[level], 0);
+        }
+        lastStep = -1;
+    }
+
+    /**
+     * Record the counts for one step.
+     * @param step The step the counts belong to.
+     * @param counts One count per species.
+     */
+    public void record(int step, int[] counts)
+    {
+        lastStep = step;
+        for(int level = 0; level < STRIDES.length; level++) {
+            long[] sum = sums[level];
+            for(int s = 0; s < species; s++) {
+                sum[s] += counts[s];
+            }
+            if(++pending[level] == STRIDES[level]) {
+                int base = (int) (written[level] % capacity) * species;
+                for(int s = 0; s < species; s++) {
+                    samples[level][base + s] = (int) (sum[s] / STRIDES[level]);
+                    sum[s] = 0;
+                }
+                pending[level] = 0;
+                written[level]++;
+            }
+        }
+    }
+
+    /**
+     * @return The number of resolution levels.
+     */
+    public int getLevels()
+    {
+        return STRIDES.length;
+    }
+
+    /**
+     * @return The number of steps each sample at the given level covers.
+     */
+    public int getStride(int level)
+    {
+        return STRIDES[level];
+    }
+
+    /**
+     * @return The number of species counted.
+     */
+    public int getSpecies()
+    {
+        return species;
+    }
+
+    /**
+     * @return The number of samples that can be read at the given level.
+     */
+    public int size(int level)
+    {
+        return (int) Math.min(written[level], capacity);
+    }
+
+    /**
+     * @return The number of samples ever written at the given level,
+     *         including those since overwritten.
+     */
+    public long getWritten(int level)
+    {
+        return written[level];
+    }
+
+    /**
+     * @return The step of the most recent record, or -1 if there is none.
+     */
+    public int getLastStep()
+    {
+        return lastStep;
+    }
+
+    /**
+     * Read one sample.
+     * @param level The resolution level.
+     * @param index The sample, from 0 (the oldest kept) to size(level) - 1.
+     * @param s The species.
+     * @return The count (the mean count for coarse levels).
+     */
+    public int get(int level, int index, int s)
+    {
+        long first = written[level] - size(level);
+        int base = (int) ((first + index) % capacity) * species;
+        return samples[level][base + s];
+    }
+
+    /**
+     * Copy the counts of one species over the most recent steps.
+     * @param n The number of steps wanted.
+     * @param s The species.
+     * @param dest Where to copy them, oldest first.
+     * @return The number of steps copied, which may be less than n.
+     */
+    public int copyLast(int n, int s, int[] dest)
+    {
+        int count = Math.min(n, size(0));
+        int start = size(0) - count;
+        for(int i = 0; i < count; i++) {
+            dest[i] = get(0, start + i, s);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,114 @@
+package sim;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * The test class PopulationHistoryTest.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class PopulationHistoryTest
+{
+    @Test
+    public void emptyHistory()
+    {
+        PopulationHistory history = new PopulationHistory(2, 8);
+        assertEquals(-1, history.getLastStep());
+        for(int level = 0; level < history.getLevels(); level++) {
+            assertEquals(0, history.size(level));
+        }
+        assertEquals(0, history.copyLast(5, 0, new int[5]));
+    }
+
+    @Test
+    public void recordsEveryStep()
+    {
+        PopulationHistory history = new PopulationHistory(2, 8);
+        for(int step = 0; step < 5; step++) {
+            history.record(step, new int[] { step, 100 - step });
+        }
+        assertEquals(4, history.getLastStep());
+        assertEquals(5, history.size(0));
+        for(int i = 0; i < 5; i++) {
+            assertEquals(i, history.get(0, i, 0));
+            assertEquals(100 - i, history.get(0, i, 1));
+        }
+    }
+
+    @Test
+    public void ringOverwritesTheOldest()
+    {
+        PopulationHistory history = new PopulationHistory(1, 4);
+        for(int step = 0; step < 10; step++) {
+            history.record(step, new int[] { step });
+        }
+        assertEquals(4, history.size(0));
+        assertEquals(10, history.getWritten(0));
+        for(int i = 0; i < 4; i++) {
+            assertEquals(6 + i, history.get(0, i, 0));
+        }
+    }
+
+    @Test
+    public void coarseLevelsHoldMeans()
+    {
+        PopulationHistory history = new PopulationHistory(1, 16);
+        assertEquals(10, history.getStride(1));
+        for(int step = 0; step < 25; step++) {
+            history.record(step, new int[] { step });
+        }
+        assertEquals(2, history.size(1));
+        // The means of 0..9 and 10..19, rounded down.
+        assertEquals(4, history.get(1, 0, 0));
+        assertEquals(14, history.get(1, 1, 0));
+        assertEquals(0, history.size(2));
+    }
+
+    @Test
+    public void coarseLevelsReachFurtherBack()
+    {
+        PopulationHistory history = new PopulationHistory(1, 4);
+        for(int step = 0; step < 400; step++) {
+            history.record(step, new int[] { 7 });
+        }
+        assertEquals(4, history.size(0));
+        assertEquals(4, history.size(1));
+        assertEquals(4, history.size(2));
+        assertEquals(7, history.get(2, 0, 0));
+    }
+
+    @Test
+    public void copyLastGivesTheMostRecent()
+    {
+        PopulationHistory history = new PopulationHistory(2, 6);
+        for(int step = 0; step < 9; step++) {
+            history.record(step, new int[] { step, -step });
+        }
+        int[] dest = new int[10];
+        assertEquals(3, history.copyLast(3, 1, dest));
+        assertEquals(-6, dest[0]);
+        assertEquals(-8, dest[2]);
+        assertEquals(6, history.copyLast(10, 0, dest));
+        assertEquals(3, dest[0]);
+    }
+
+    @Test
+    public void clearForgetsEverything()
+    {
+        PopulationHistory history = new PopulationHistory(1, 4);
+        for(int step = 0; step < 15; step++) {
+            history.record(step, new int[] { 50 });
+        }
+        history.clear();
+        assertEquals(-1, history.getLastStep());
+        assertEquals(0, history.size(0));
+        assertEquals(0, history.size(1));
+        // A partly built coarse sample is dropped too.
+        for(int step = 0; step < 10; step++) {
+            history.record(step, new int[] { 2 });
+        }
+        assertEquals(2, history.get(1, 0, 0));
+    }
+}
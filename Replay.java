@@ -0,0 +1,153 @@
+package sim;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reconstruct any step of a RuleEngine run from its seed.
+ *
+ * A run is deterministic for a given seed, so any step can be reached
+ * by running from the start; to make that quick, the replay saves a
+ * checkpoint every so many steps as it goes. Going to a step restores
+ * the nearest checkpoint at or before it and runs forward from there,
+ * so going backwards, or to a step already passed, costs at most one
+ * checkpoint interval of steps. At most MAX_CHECKPOINTS are kept: when a
+ * long run would save more, the interval doubles and the checkpoints
+ * between the new multiples are dropped, so a run of n steps keeps them
+ * about n / MAX_CHECKPOINTS steps apart.
+ *
+ * Usage:
+ *   java sim.Replay [--rules file] [--depth 80] [--width 120] [--seed 1]
+ *                   [--interval 10000] step...
+ *
+ * prints the populations at each step given, in the order given.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class Replay
+{
+    // The most checkpoints kept at once.
+    public static final int MAX_CHECKPOINTS = 64;
+
+    private RuleEngine engine;
+    // Steps between checkpoints; doubles as the run grows.
+    private int interval;
+    // Checkpoints by step; step 0 is always there.
+    private TreeMap<Integer, RuleEngine.Checkpoint> checkpoints = new TreeMap<>();
+
+    /**
+     * Start a replay of a run.
+     * @param registry The species and their rules.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param seed The seed of the run.
+     * @param interval The number of steps between checkpoints.
+     */
+    public Replay(SpeciesRegistry registry, int depth, int width, long seed, int interval)
+    {
+        if(interval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+        }
+        this.interval = interval;
+        engine = new RuleEngine(registry, depth, width, seed);
+        checkpoints.put(0, engine.checkpoint());
+    }
+
+    /**
+     * Bring the engine to the given step.
+     * @param step The step to go to; may be before the current one.
+     * @return The engine, at that step. It belongs to the replay, so run
+     *         it on only through goTo.
+     */
+    public RuleEngine goTo(int step)
+    {
+        if(step < 0) {
+            throw new IllegalArgumentException("No such step: " + step);
+        }
+        Map.Entry<Integer, RuleEngine.Checkpoint> nearest = checkpoints.floorEntry(step);
+        if(step < engine.getStep() || nearest.getKey() > engine.getStep()) {
+            engine.restore(nearest.getValue());
+        }
+        while(engine.getStep() < step) {
+            engine.simulateOneStep();
+            if(engine.getStep() % interval == 0 && !checkpoints.containsKey(engine.getStep())) {
+                checkpoints.put(engine.getStep(), engine.checkpoint());
+                if(checkpoints.size() > MAX_CHECKPOINTS) {
+                    thin();
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Double the interval and drop the checkpoints that are not at a
+     * multiple of it. Step 0 always stays.
+     */
+    private void thin()
+    {
+        interval *= 2;
+        checkpoints.keySet().removeIf(at -> at % interval != 0);
+    }
+
+    /**
+     * @return The number of checkpoints kept.
+     */
+    public int getCheckpointCount()
+    {
+        return checkpoints.size();
+    }
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        System.setProperty("java.awt.headless", "true");
+        String rules = null;
+        int depth = 80;
+        int width = 120;
+        long seed = 1;
+        int interval = 10000;
+        int i = 0;
+        try {
+            for(; i < args.length && args[i].startsWith("--"); i += 2) {
+                String value = args[i + 1];
+                switch(args[i]) {
+                    case "--rules":    rules = value; break;
+                    case "--depth":    depth = Integer.parseInt(value); break;
+                    case "--width":    width = Integer.parseInt(value); break;
+                    case "--seed":     seed = Long.parseLong(value); break;
+                    case "--interval": interval = Integer.parseInt(value); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if(i >= args.length) {
+                throw new IllegalArgumentException("No steps given");
+            }
+        }
+        catch(IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java sim.Replay [--rules file] [--depth n] [--width n]"
+                + " [--seed n] [--interval n] step...");
+            System.exit(2);
+        }
+        SpeciesRegistry registry = rules == null ? SpeciesRegistry.standardRules()
+                                                 : SpeciesRegistry.load(rules);
+        Replay replay = new Replay(registry, depth, width, seed, interval);
+        for(; i < args.length; i++) {
+            long start = System.nanoTime();
+            RuleEngine at = replay.goTo(Integer.parseInt(args[i]));
+            StringBuilder details = new StringBuilder();
+            for(int id = 0; id < registry.size(); id++) {
+                details.append(registry.get(id).getName()).append(": ")
+                       .append(at.getPopulation(id)).append(' ');
+            }
+            System.out.printf("Step %d: %s(%.3f s)%n", at.getStep(), details,
+                              (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
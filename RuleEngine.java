@@ -0,0 +1,987 @@
+package sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A headless predator-prey engine driven entirely by the species rules
+ * in a SpeciesRegistry, usually read from a rules file.
+ *
+ * Animals are not objects here. Their state lives in parallel arrays
+ * (species, cell, age, food) indexed by a slot number, and each species
+ * keeps a list of its slots. A step runs one kernel per species over its
+ * own list, with that species' parameters copied into final fields when
+ * the engine is built, so the inner loop has no virtual calls and no
+ * type checks, and walks one species' data at a time. The behaviour
+ * follows the original animals: age, hunger for predators, breeding into
+ * free neighbouring cells, eating neighbouring prey, moving, and dying
+ * of old age, hunger or overcrowding.
+ *
+ * The occupancy grid and the animals' state can be kept off the heap
+ * instead, in direct ChunkedBuffers indexed by long, so a very large
+ * world adds little to the heap the garbage collector looks after and
+ * is not limited to the 2 GB of a single buffer. Only the per-species
+ * lists of slots stay on the heap. The kernels go through accessors that
+ * pick the arrays or the buffers, so on the heap they still work on
+ * plain arrays.
+ *
+ * Species act in id order, and newborns first act on the next step.
+ * Runs are repeatable for a given seed. Births, deaths (with their
+ * cause) and moves can be streamed to subscribers with setEventStream,
+ * and the whole state, random generator included, can be saved with
+ * checkpoint and restored later (see Replay), or written to a file and
+ * mapped back in.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class RuleEngine implements PopulationCounts
+{
+    // Offsets to the eight neighbouring cells.
+    private static final int[] ROW_OFFSETS = { -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] COL_OFFSETS = { -1, 0, 1, -1, 1, -1, 0, 1 };
+    private static final int INITIAL_SLOTS = 1024;
+
+    private SpeciesRegistry registry;
+    private int depth;
+    private int width;
+    // Whether the grid and animal state are held in direct buffers.
+    private final boolean offHeap;
+    private Random rand;
+    private int step;
+
+    // The occupant of each cell: its slot plus one, or 0 when empty; in
+    // cells on the heap, or four bytes a cell in offCells off it.
+    private int[] cells;
+    private ChunkedBuffer offCells;
+    // Animal state by slot.
+    private Slots slots;
+    // Slots in use, and slots freed for reuse.
+    private int used;
+    private int[] freeSlots;
+    private int freeCount;
+
+    // The slots of each species' animals, and newborns waiting to join them.
+    private int[][] members;
+    private int[] memberCount;
+    private int[][] born;
+    private int[] bornCount;
+    private int[] populations;
+    private Kernel[] kernels;
+    // The food a newborn starts with: as much as its best prey gives.
+    private int[] birthFood;
+    // Where to report births, deaths and moves, or null.
+    private EventStream events;
+    // Whether events are being recorded this step.
+    private boolean recording;
+    // Steps between renumbering the slots in Z-order; 0 never to.
+    private int sortInterval = 0;
+
+    /**
+     * Create an engine with its state on the heap and populate its field.
+     * @param registry The species and their rules.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param seed The random seed.
+     */
+    public RuleEngine(SpeciesRegistry registry, int depth, int width, long seed)
+    {
+        this(registry, depth, width, seed, false);
+    }
+
+    /**
+     * Create an engine and populate its field.
+     * @param registry The species and their rules.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param seed The random seed.
+     * @param offHeap true to hold the grid and animal state off the heap.
+     */
+    public RuleEngine(SpeciesRegistry registry, int depth, int width, long seed, boolean offHeap)
+    {
+        registry.freeze();
+        this.registry = registry;
+        this.depth = depth;
+        this.width = width;
+        this.offHeap = offHeap;
+        int species = registry.size();
+        if((long) depth * width >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Field too large: " + depth + "x" + width);
+        }
+        if(offHeap) {
+            offCells = new ChunkedBuffer((long) depth * width * Integer.BYTES, true);
+        }
+        else {
+            cells = new int[depth * width];
+        }
+        slots = new Slots(INITIAL_SLOTS, offHeap);
+        freeSlots = new int[INITIAL_SLOTS];
+        members = new int[species][INITIAL_SLOTS];
+        memberCount = new int[species];
+        born = new int[species][INITIAL_SLOTS];
+        bornCount = new int[species];
+        populations = new int[species];
+        kernels = new Kernel[species];
+        birthFood = new int[species];
+        for(int id = 0; id < species; id++) {
+            kernels[id] = new Kernel(registry.get(id));
+            for(int prey = 0; prey < species; prey++) {
+                if(registry.get(id).eats(prey)) {
+                    birthFood[id] = Math.max(birthFood[id], registry.get(prey).getFoodValue());
+                }
+            }
+        }
+        reset(seed);
+    }
+
+    /**
+     * Clear the field and populate it afresh from the given seed.
+     */
+    public void reset(long seed)
+    {
+        rand = new Random(seed);
+        step = 0;
+        recording = false;
+        if(offHeap) {
+            offCells.clear(0, offCells.size());
+        }
+        else {
+            Arrays.fill(cells, 0);
+        }
+        used = 0;
+        freeCount = 0;
+        Arrays.fill(memberCount, 0);
+        Arrays.fill(bornCount, 0);
+        Arrays.fill(populations, 0);
+        int maxFood = 1;
+        for(int id = 0; id < registry.size(); id++) {
+            maxFood = Math.max(maxFood, registry.get(id).getFoodValue());
+        }
+        for(int cell = 0; cell < depth * width; cell++) {
+            double draw = rand.nextDouble();
+            for(int id = 0; id < registry.size(); id++) {
+                Species species = registry.get(id);
+                if(draw < species.getCreationProbability()) {
+                    int slot = spawn(id, cell);
+                    // Start with a spread of ages and hunger, as the original did.
+                    slots.setAge(slot, rand.nextInt(Math.max(1, species.getMaxAge())));
+                    slots.setFood(slot, rand.nextInt(maxFood) + 1);
+                    break;
+                }
+                draw -= species.getCreationProbability();
+            }
+        }
+        joinNewborns();
+    }
+
+    /**
+     * Run the given number of steps, stopping early if the condition is met
+     * or the simulation ceases to be viable.
+     * @return The number of steps run.
+     */
+    public int simulate(int numSteps, StopCondition stop)
+    {
+        int done = 0;
+        while(done < numSteps && isViable()) {
+            simulateOneStep();
+            done++;
+            if(stop.shouldStop(this)) {
+                break;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Run one step: each species' kernel in turn, then tidy up.
+     */
+    public void simulateOneStep()
+    {
+        step++;
+        recording = events != null && events.isActive();
+        for(Kernel kernel : kernels) {
+            kernel.step();
+        }
+        dropDead();
+        joinNewborns();
+        if(sortInterval > 0 && step % sortInterval == 0) {
+            sortSlots();
+        }
+        if(recording) {
+            events.endStep(step);
+        }
+    }
+
+    /**
+     * Renumber the animals every given number of steps so that each
+     * species' slots run in Z-order of their cells. Its kernel then walks
+     * the state arrays from front to back and the field a block at a time,
+     * rather than wherever births and deaths have scattered them. The
+     * order in which animals act changes the run, but a given seed and
+     * interval always give the same run.
+     * @param interval Steps between sorts, or 0 never to sort.
+     */
+    public void setLocalitySortInterval(int interval)
+    {
+        sortInterval = Math.max(0, interval);
+    }
+
+    /**
+     * Give the living animals new slots, species by species and in
+     * Z-order within each, with no gaps.
+     */
+    private void sortSlots()
+    {
+        int total = 0;
+        for(int id = 0; id < members.length; id++) {
+            total += memberCount[id];
+        }
+        Slots old = slots;
+        slots = new Slots(Math.max(INITIAL_SLOTS, total), offHeap);
+        int next = 0;
+        for(int id = 0; id < members.length; id++) {
+            int count = memberCount[id];
+            int[] list = members[id];
+            long[] keys = new long[count];
+            for(int i = 0; i < count; i++) {
+                int cell = old.getWhere(list[i]);
+                keys[i] = Integer.toUnsignedLong(ZOrder.encode(cell / width, cell % width)) << 31
+                          | list[i];
+            }
+            Arrays.sort(keys);
+            for(int i = 0; i < count; i++) {
+                int slot = (int) (keys[i] & Integer.MAX_VALUE);
+                slots.setKind(next, old.getKind(slot));
+                slots.setWhere(next, old.getWhere(slot));
+                slots.setAge(next, old.getAge(slot));
+                slots.setFood(next, old.getFood(slot));
+                slots.setAlive(next, true);
+                setOccupant(old.getWhere(slot), next + 1);
+                list[i] = next;
+                next++;
+            }
+        }
+        used = next;
+        freeCount = 0;
+    }
+
+    /**
+     * Save the whole state of the engine between steps. The checkpoint
+     * is off the heap if the engine is.
+     * @return A checkpoint that restore can return to.
+     */
+    public Checkpoint checkpoint()
+    {
+        return new Checkpoint(this);
+    }
+
+    /**
+     * Return to a saved state. Running on from it gives exactly the steps
+     * that followed it the first time.
+     * @param checkpoint A checkpoint from an engine with the same species
+     *                   and field size.
+     */
+    public void restore(Checkpoint checkpoint)
+    {
+        ChunkedBuffer in = checkpoint.data;
+        int[] header = new int[Checkpoint.HEADER_INTS];
+        in.getInts(0, header, header.length);
+        if(header[0] != Checkpoint.MAGIC || header[1] != depth || header[2] != width
+           || header[3] != populations.length) {
+            throw new IllegalArgumentException("Checkpoint is from a different engine");
+        }
+        step = header[4];
+        used = header[5];
+        freeCount = header[6];
+        byte[] random = new byte[header[7]];
+        in.getBytes(Checkpoint.HEADER_SIZE, random, random.length);
+        rand = Checkpoint.restoreRandom(random);
+        recording = false;
+
+        long at = Checkpoint.align(Checkpoint.HEADER_SIZE + random.length);
+        long cellBytes = (long) depth * width * Integer.BYTES;
+        if(offHeap) {
+            ChunkedBuffer.copy(in, at, offCells, 0, cellBytes);
+        }
+        else {
+            in.getInts(at, cells, cells.length);
+        }
+        at += cellBytes;
+        slots = new Slots(Math.max(INITIAL_SLOTS, used), offHeap);
+        at = slots.loadInts(in, at, used);
+        at = getInts(in, at, memberCount, memberCount.length);
+        at = getInts(in, at, populations, populations.length);
+        freeSlots = new int[Math.max(INITIAL_SLOTS, freeCount)];
+        at = getInts(in, at, freeSlots, freeCount);
+        for(int id = 0; id < members.length; id++) {
+            members[id] = new int[Math.max(INITIAL_SLOTS, memberCount[id])];
+            at = getInts(in, at, members[id], memberCount[id]);
+        }
+        slots.loadBytes(in, at, used);
+        Arrays.fill(bornCount, 0);
+    }
+
+    /**
+     * Report every birth, death and move to the given stream, one batch
+     * per step; or stop reporting if it is null.
+     */
+    public void setEventStream(EventStream events)
+    {
+        this.events = events;
+    }
+
+    public int getStep()
+    {
+        return step;
+    }
+
+    public int getPopulation(int id)
+    {
+        return populations[id];
+    }
+
+    public SpeciesRegistry getSpeciesRegistry()
+    {
+        return registry;
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The code of the species in a cell (see SpeciesGrid), or EMPTY.
+     */
+    public byte getCode(int row, int col)
+    {
+        int occupant = getOccupant(row * width + col);
+        return occupant == 0 ? SpeciesGrid.EMPTY : (byte) (slots.getKind(occupant - 1) + 1);
+    }
+
+    /**
+     * The step of one species, with its rules fixed when the engine is built.
+     */
+    private class Kernel
+    {
+        private final int id;
+        private final int maxAge;
+        private final int breedingAge;
+        private final double breedingProbability;
+        private final int maxLitterSize;
+        private final long preyMask;
+        private final boolean hunts;
+
+        public Kernel(Species species)
+        {
+            id = species.getId();
+            maxAge = species.getMaxAge();
+            breedingAge = species.getBreedingAge();
+            breedingProbability = species.getBreedingProbability();
+            maxLitterSize = Math.max(1, species.getMaxLitterSize());
+            preyMask = species.getPreyMask();
+            hunts = preyMask != 0;
+        }
+
+        public void step()
+        {
+            int[] list = members[id];
+            int count = memberCount[id];
+            for(int i = 0; i < count; i++) {
+                int slot = list[i];
+                if(!slots.isAlive(slot)) {
+                    continue;
+                }
+                int newAge = slots.getAge(slot) + 1;
+                slots.setAge(slot, newAge);
+                if(newAge > maxAge) {
+                    kill(slot, EventBatch.DEATH_AGE, -1);
+                    continue;
+                }
+                if(hunts) {
+                    int newFood = slots.getFood(slot) - 1;
+                    slots.setFood(slot, newFood);
+                    if(newFood <= 0) {
+                        kill(slot, EventBatch.DEATH_STARVATION, -1);
+                        continue;
+                    }
+                }
+                int here = slots.getWhere(slot);
+                if(newAge >= breedingAge && rand.nextDouble() <= breedingProbability) {
+                    int births = rand.nextInt(maxLitterSize) + 1;
+                    for(int b = 0; b < births; b++) {
+                        int cell = freeNeighbour(here);
+                        if(cell < 0) {
+                            break;
+                        }
+                        spawn(id, cell);
+                        if(recording) {
+                            events.record(EventBatch.BIRTH, id, here, cell);
+                        }
+                    }
+                }
+                int target = hunts ? eatNeighbour(slot, preyMask) : -1;
+                if(target < 0) {
+                    target = freeNeighbour(here);
+                }
+                if(target >= 0) {
+                    if(recording) {
+                        events.record(EventBatch.MOVE, id, here, target);
+                    }
+                    setOccupant(here, 0);
+                    setOccupant(target, slot + 1);
+                    slots.setWhere(slot, target);
+                }
+                else {
+                    kill(slot, EventBatch.DEATH_OVERCROWDING, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Look for prey next to an animal and eat the first found.
+     * @return The cell the prey was in, or -1 if there was none.
+     */
+    private int eatNeighbour(int slot, long preyMask)
+    {
+        int cell = slots.getWhere(slot);
+        int row = cell / width;
+        int col = cell % width;
+        int start = rand.nextInt(ROW_OFFSETS.length);
+        for(int i = 0; i < ROW_OFFSETS.length; i++) {
+            int k = (start + i) % ROW_OFFSETS.length;
+            int r = row + ROW_OFFSETS[k];
+            int c = col + COL_OFFSETS[k];
+            if(r >= 0 && r < depth && c >= 0 && c < width) {
+                int occupant = getOccupant(r * width + c);
+                if(occupant != 0 && (preyMask & (1L << slots.getKind(occupant - 1))) != 0) {
+                    slots.setFood(slot, registry.get(slots.getKind(occupant - 1)).getFoodValue());
+                    kill(occupant - 1, EventBatch.DEATH_PREDATION, cell);
+                    return r * width + c;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return A random free cell next to the given one, or -1 if there is none.
+     */
+    private int freeNeighbour(int cell)
+    {
+        int row = cell / width;
+        int col = cell % width;
+        int start = rand.nextInt(ROW_OFFSETS.length);
+        for(int i = 0; i < ROW_OFFSETS.length; i++) {
+            int k = (start + i) % ROW_OFFSETS.length;
+            int r = row + ROW_OFFSETS[k];
+            int c = col + COL_OFFSETS[k];
+            if(r >= 0 && r < depth && c >= 0 && c < width && getOccupant(r * width + c) == 0) {
+                return r * width + c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Put a new animal of the given species in a free cell.
+     * @return Its slot.
+     */
+    private int spawn(int id, int cell)
+    {
+        int slot;
+        if(freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        }
+        else {
+            if(used == slots.capacity) {
+                Slots old = slots;
+                slots = new Slots(old.capacity * 2, offHeap);
+                slots.copyFrom(old, used);
+            }
+            slot = used++;
+        }
+        slots.setKind(slot, id);
+        slots.setWhere(slot, cell);
+        slots.setAge(slot, 0);
+        slots.setFood(slot, birthFood[id]);
+        slots.setAlive(slot, true);
+        setOccupant(cell, slot + 1);
+        if(bornCount[id] == born[id].length) {
+            born[id] = Arrays.copyOf(born[id], born[id].length * 2);
+        }
+        born[id][bornCount[id]++] = slot;
+        populations[id]++;
+        return slot;
+    }
+
+    /**
+     * Remove an animal from the field.
+     * @param cause The death's event type, from EventBatch.
+     * @param killer The predator's cell for a death by predation, else -1.
+     */
+    private void kill(int slot, byte cause, int killer)
+    {
+        if(recording) {
+            events.record(cause, slots.getKind(slot), killer, slots.getWhere(slot));
+        }
+        slots.setAlive(slot, false);
+        setOccupant(slots.getWhere(slot), 0);
+        populations[slots.getKind(slot)]--;
+    }
+
+    /**
+     * Take dead animals out of the species lists and free their slots.
+     * Slots are only reused once nothing refers to them.
+     */
+    private void dropDead()
+    {
+        for(int id = 0; id < members.length; id++) {
+            dropDead(members[id], memberCount, id);
+            dropDead(born[id], bornCount, id);
+        }
+    }
+
+    private void dropDead(int[] list, int[] counts, int id)
+    {
+        int kept = 0;
+        for(int i = 0; i < counts[id]; i++) {
+            int slot = list[i];
+            if(slots.isAlive(slot)) {
+                list[kept++] = slot;
+            }
+            else {
+                if(freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        }
+        counts[id] = kept;
+    }
+
+    /**
+     * Add this step's newborns to their species' lists.
+     */
+    private void joinNewborns()
+    {
+        for(int id = 0; id < members.length; id++) {
+            int total = memberCount[id] + bornCount[id];
+            if(total > members[id].length) {
+                members[id] = Arrays.copyOf(members[id], Math.max(total, members[id].length * 2));
+            }
+            System.arraycopy(born[id], 0, members[id], memberCount[id], bornCount[id]);
+            memberCount[id] = total;
+            bornCount[id] = 0;
+        }
+    }
+
+    private int getOccupant(int cell)
+    {
+        return offHeap ? offCells.getInt((long) cell * Integer.BYTES) : cells[cell];
+    }
+
+    private void setOccupant(int cell, int occupant)
+    {
+        if(offHeap) {
+            offCells.putInt((long) cell * Integer.BYTES, occupant);
+        }
+        else {
+            cells[cell] = occupant;
+        }
+    }
+
+    /**
+     * Read count ints from a byte index of a buffer.
+     * @return The index just past them.
+     */
+    private static long getInts(ChunkedBuffer in, long at, int[] dest, int count)
+    {
+        in.getInts(at, dest, count);
+        return at + (long) count * Integer.BYTES;
+    }
+
+    /**
+     * Write count ints at a byte index of a buffer.
+     * @return The index just past them.
+     */
+    private static long putInts(ChunkedBuffer out, long at, int[] src, int count)
+    {
+        out.putInts(at, src, count);
+        return at + (long) count * Integer.BYTES;
+    }
+
+    /**
+     * The animals' state by slot: species, cell, age, food and whether
+     * alive. On the heap it is held in arrays; off it, in direct buffers
+     * with four bytes to an int and alive as 1 or 0.
+     */
+    private static class Slots
+    {
+        private final int capacity;
+        private final boolean offHeap;
+        private byte[] kind;
+        private int[] where;
+        private int[] age;
+        private int[] food;
+        private boolean[] alive;
+        private ChunkedBuffer offKind;
+        private ChunkedBuffer offWhere;
+        private ChunkedBuffer offAge;
+        private ChunkedBuffer offFood;
+        private ChunkedBuffer offAlive;
+
+        public Slots(int capacity, boolean offHeap)
+        {
+            this.capacity = capacity;
+            this.offHeap = offHeap;
+            if(offHeap) {
+                long ints = (long) capacity * Integer.BYTES;
+                offKind = new ChunkedBuffer(capacity, true);
+                offWhere = new ChunkedBuffer(ints, true);
+                offAge = new ChunkedBuffer(ints, true);
+                offFood = new ChunkedBuffer(ints, true);
+                offAlive = new ChunkedBuffer(capacity, true);
+            }
+            else {
+                kind = new byte[capacity];
+                where = new int[capacity];
+                age = new int[capacity];
+                food = new int[capacity];
+                alive = new boolean[capacity];
+            }
+        }
+
+        public int getKind(int slot)
+        {
+            return offHeap ? offKind.get(slot) : kind[slot];
+        }
+
+        public void setKind(int slot, int id)
+        {
+            if(offHeap) {
+                offKind.put(slot, (byte) id);
+            }
+            else {
+                kind[slot] = (byte) id;
+            }
+        }
+
+        public int getWhere(int slot)
+        {
+            return offHeap ? offWhere.getInt((long) slot * Integer.BYTES) : where[slot];
+        }
+
+        public void setWhere(int slot, int cell)
+        {
+            if(offHeap) {
+                offWhere.putInt((long) slot * Integer.BYTES, cell);
+            }
+            else {
+                where[slot] = cell;
+            }
+        }
+
+        public int getAge(int slot)
+        {
+            return offHeap ? offAge.getInt((long) slot * Integer.BYTES) : age[slot];
+        }
+
+        public void setAge(int slot, int value)
+        {
+            if(offHeap) {
+                offAge.putInt((long) slot * Integer.BYTES, value);
+            }
+            else {
+                age[slot] = value;
+            }
+        }
+
+        public int getFood(int slot)
+        {
+            return offHeap ? offFood.getInt((long) slot * Integer.BYTES) : food[slot];
+        }
+
+        public void setFood(int slot, int value)
+        {
+            if(offHeap) {
+                offFood.putInt((long) slot * Integer.BYTES, value);
+            }
+            else {
+                food[slot] = value;
+            }
+        }
+
+        public boolean isAlive(int slot)
+        {
+            return offHeap ? offAlive.get(slot) != 0 : alive[slot];
+        }
+
+        public void setAlive(int slot, boolean isAlive)
+        {
+            if(offHeap) {
+                offAlive.put(slot, (byte) (isAlive ? 1 : 0));
+            }
+            else {
+                alive[slot] = isAlive;
+            }
+        }
+
+        /**
+         * Copy the first count slots of another Slots held the same way.
+         */
+        public void copyFrom(Slots from, int count)
+        {
+            if(offHeap) {
+                long ints = (long) count * Integer.BYTES;
+                ChunkedBuffer.copy(from.offKind, 0, offKind, 0, count);
+                ChunkedBuffer.copy(from.offWhere, 0, offWhere, 0, ints);
+                ChunkedBuffer.copy(from.offAge, 0, offAge, 0, ints);
+                ChunkedBuffer.copy(from.offFood, 0, offFood, 0, ints);
+                ChunkedBuffer.copy(from.offAlive, 0, offAlive, 0, count);
+            }
+            else {
+                System.arraycopy(from.kind, 0, kind, 0, count);
+                System.arraycopy(from.where, 0, where, 0, count);
+                System.arraycopy(from.age, 0, age, 0, count);
+                System.arraycopy(from.food, 0, food, 0, count);
+                System.arraycopy(from.alive, 0, alive, 0, count);
+            }
+        }
+
+        /**
+         * Write the cells, ages and food of the first count slots, in that
+         * order, at a byte index of a buffer.
+         * @return The index just past them.
+         */
+        public long saveInts(ChunkedBuffer out, long at, int count)
+        {
+            long ints = (long) count * Integer.BYTES;
+            if(offHeap) {
+                ChunkedBuffer.copy(offWhere, 0, out, at, ints);
+                ChunkedBuffer.copy(offAge, 0, out, at + ints, ints);
+                ChunkedBuffer.copy(offFood, 0, out, at + 2 * ints, ints);
+                return at + 3 * ints;
+            }
+            at = putInts(out, at, where, count);
+            at = putInts(out, at, age, count);
+            return putInts(out, at, food, count);
+        }
+
+        /**
+         * Read back what saveInts wrote.
+         * @return The index just past it.
+         */
+        public long loadInts(ChunkedBuffer in, long at, int count)
+        {
+            long ints = (long) count * Integer.BYTES;
+            if(offHeap) {
+                ChunkedBuffer.copy(in, at, offWhere, 0, ints);
+                ChunkedBuffer.copy(in, at + ints, offAge, 0, ints);
+                ChunkedBuffer.copy(in, at + 2 * ints, offFood, 0, ints);
+                return at + 3 * ints;
+            }
+            at = getInts(in, at, where, count);
+            at = getInts(in, at, age, count);
+            return getInts(in, at, food, count);
+        }
+
+        /**
+         * Write the species of the first count slots, then whether each is
+         * alive as 1 or 0, at a byte index of a buffer.
+         * @return The index just past them.
+         */
+        public long saveBytes(ChunkedBuffer out, long at, int count)
+        {
+            if(offHeap) {
+                ChunkedBuffer.copy(offKind, 0, out, at, count);
+                ChunkedBuffer.copy(offAlive, 0, out, at + count, count);
+                return at + 2L * count;
+            }
+            out.putBytes(at, kind, count);
+            byte[] flags = new byte[count];
+            for(int slot = 0; slot < count; slot++) {
+                flags[slot] = (byte) (alive[slot] ? 1 : 0);
+            }
+            out.putBytes(at + count, flags, count);
+            return at + 2L * count;
+        }
+
+        /**
+         * Read back what saveBytes wrote.
+         * @return The index just past it.
+         */
+        public long loadBytes(ChunkedBuffer in, long at, int count)
+        {
+            if(offHeap) {
+                ChunkedBuffer.copy(in, at, offKind, 0, count);
+                ChunkedBuffer.copy(in, at + count, offAlive, 0, count);
+                return at + 2L * count;
+            }
+            in.getBytes(at, kind, count);
+            byte[] flags = new byte[count];
+            in.getBytes(at + count, flags, count);
+            for(int slot = 0; slot < count; slot++) {
+                alive[slot] = flags[slot] != 0;
+            }
+            return at + 2L * count;
+        }
+    }
+
+    /**
+     * The saved state of an engine between two steps, in a ChunkedBuffer
+     * (so it may pass 2 GB) laid out as in a checkpoint file: a header
+     * (magic, depth, width, species, step, slots used, free slots, random
+     * state length), the saved random generator, then the grid, the slot
+     * state, the species lists and the slot kinds and flags. Only the
+     * slots in use are kept.
+     */
+    public static class Checkpoint
+    {
+        // "CHK1", marking a checkpoint.
+        private static final int MAGIC = 0x43484b31;
+        private static final int HEADER_INTS = 8;
+        private static final int HEADER_SIZE = HEADER_INTS * Integer.BYTES;
+
+        private final ChunkedBuffer data;
+        private final int step;
+
+        private Checkpoint(RuleEngine engine)
+        {
+            step = engine.step;
+            byte[] random = saveRandom(engine.rand);
+            int used = engine.used;
+            int species = engine.members.length;
+            long cells = (long) engine.depth * engine.width;
+            long ints = cells + 3L * used + 2L * species + engine.freeCount;
+            for(int id = 0; id < species; id++) {
+                ints += engine.memberCount[id];
+            }
+            long size = align(HEADER_SIZE + random.length) + ints * Integer.BYTES + 2L * used;
+            ChunkedBuffer out = new ChunkedBuffer(size, engine.offHeap);
+            int[] header = { MAGIC, engine.depth, engine.width, species,
+                             step, used, engine.freeCount, random.length };
+            out.putInts(0, header, header.length);
+            out.putBytes(HEADER_SIZE, random, random.length);
+            long at = align(HEADER_SIZE + random.length);
+            if(engine.offHeap) {
+                ChunkedBuffer.copy(engine.offCells, 0, out, at, cells * Integer.BYTES);
+                at += cells * Integer.BYTES;
+            }
+            else {
+                at = putInts(out, at, engine.cells, engine.cells.length);
+            }
+            at = engine.slots.saveInts(out, at, used);
+            at = putInts(out, at, engine.memberCount, species);
+            at = putInts(out, at, engine.populations, species);
+            at = putInts(out, at, engine.freeSlots, engine.freeCount);
+            for(int id = 0; id < species; id++) {
+                at = putInts(out, at, engine.members[id], engine.memberCount[id]);
+            }
+            engine.slots.saveBytes(out, at, used);
+            data = out;
+        }
+
+        private Checkpoint(ChunkedBuffer data)
+        {
+            this.data = data;
+            if(data.size() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Not a checkpoint");
+            }
+            step = data.getInt(4 * Integer.BYTES);
+        }
+
+        /**
+         * @return The step the checkpoint was taken after.
+         */
+        public int getStep()
+        {
+            return step;
+        }
+
+        /**
+         * @return The size of the checkpoint in bytes.
+         */
+        public long getSize()
+        {
+            return data.size();
+        }
+
+        /**
+         * Write the checkpoint to a file.
+         * @param file The file to (over)write.
+         */
+        public void writeTo(String file) throws IOException
+        {
+            try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                                                       StandardOpenOption.WRITE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING)) {
+                data.writeTo(channel);
+            }
+        }
+
+        /**
+         * Map a checkpoint file into memory, without reading it onto the
+         * heap. It must have been written on a machine with the same byte
+         * order.
+         * @param file A file written by writeTo.
+         * @return The checkpoint.
+         */
+        public static Checkpoint readFrom(String file) throws IOException
+        {
+            try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+                return new Checkpoint(ChunkedBuffer.map(channel));
+            }
+        }
+
+        /**
+         * @return The position rounded up to a whole int.
+         */
+        private static long align(long position)
+        {
+            return (position + Integer.BYTES - 1) & -Integer.BYTES;
+        }
+
+        /**
+         * Random keeps its state private, but it is Serializable, so save
+         * it that way.
+         */
+        private static byte[] saveRandom(Random rand)
+        {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(rand);
+                }
+                return bytes.toByteArray();
+            }
+            catch(IOException e) {
+                throw new IllegalStateException("Cannot save random state", e);
+            }
+        }
+
+        private static Random restoreRandom(byte[] random)
+        {
+            try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(random))) {
+                return (Random) in.readObject();
+            }
+            catch(IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Cannot restore random state", e);
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@ import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JLabel;
 import java.awt.event.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //import javax.swing.Timer;
 
@@ -26,7 +28,8 @@ public class SimController
     private JMenuItem Load;
     private JMenuItem Save;
     private JMenuItem Quit;
-    private JFileChooser chooser = new JFileChooser();
+    // Built on first use, it is slow to create.
+    private JFileChooser chooser = null;
     private JOptionPane error_pane; 
     private JLabel runningLabel;
     private JLabel statusLabel;
@@ -39,8 +42,12 @@ public class SimController
     private JButton Slower;
     private JButton Faster;
     private JButton Run_To;
-    private Simulator sim = new Simulator();
-    private Timer timer;
+    // Built off the event thread; null until it is ready.
+    private Simulator sim = null;
+    // Delivers steps while running; one for the lifetime of the controller.
+    private StepScheduler scheduler;
+    private AtomicInteger pendingSteps = new AtomicInteger();
+    private AtomicBoolean drainPosted = new AtomicBoolean();
     private int delay = 500;
     private String for_status = "        Step :";
     /**
@@ -48,8 +55,46 @@ public class SimController
      */
     public SimController()
     {
+        scheduler = new StepScheduler(stepsPerSecond(), this::stepsDue);
         makeFrame();
+        set_buttons_enabled(false);
         frame.setVisible(true);
+        // Populate the field while the frame comes up.
+        new Thread(this::create_simulator, "Simulator Setup").start();
+    }
+
+    /**
+     * Build the simulator off the event thread, then hand it over, or
+     * report on the event thread that it could not be built.
+     */
+    private void create_simulator(){
+        try {
+            Simulator built = new Simulator(false);
+            SwingUtilities.invokeLater(() -> {
+                sim = built;
+                sim.showViews();
+                statusLabel.setText(statusText());
+                set_buttons_enabled(true);
+            });
+        }
+        catch(RuntimeException | Error e) {
+            SwingUtilities.invokeLater(() -> {
+                System.out.println("Error setting up the simulator: " + e);
+                runningLabel.setText("Setup failed: " + e);
+                JOptionPane.showMessageDialog(frame, "The simulator could not be set up:\n" + e,
+                                              "Sim Control", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    /**
+     * Enable or disable the buttons that need the simulator.
+     */
+    private void set_buttons_enabled(boolean enabled){
+        Run.setEnabled(enabled);
+        Stop.setEnabled(enabled);
+        Step.setEnabled(enabled);
+        Run_To.setEnabled(enabled);
     }
 
     public void makeFrame()
@@ -106,7 +151,7 @@ public class SimController
          JPanel status_bar = new JPanel(new FlowLayout(FlowLayout.LEFT));
          status_bar.setBorder(new CompoundBorder(new LineBorder(Color.DARK_GRAY),
          new EmptyBorder(4, 4, 4, 4)));
-         statusLabel = new JLabel(sim.getDetails().concat(for_status.concat(Integer.toString(sim.getStep()))));
+         statusLabel = new JLabel("Setting up...");
          status_bar.add(statusLabel);
          
          contentPane.add(running_status_bar,BorderLayout.NORTH);
@@ -119,77 +164,97 @@ public class SimController
     }
     
     public void run_event(){
-        timer = new Timer(delay, new_step);
-        timer.start();
+        scheduler.start();
         runningLabel.setText("Sim Running");
     }
     
     public void stop_event(){
         
-        timer.stop();
+        scheduler.stop();
         runningLabel.setText("Sim Not Running");
     }
     
     public void step_event(){
-        if (timer == null){timer = new Timer(delay, new_step);};
-        timer.stop();
+        scheduler.stop();
         sim.simulateOneStep();
-        statusLabel.setText(sim.getDetails().concat(for_status.concat(Integer.toString(sim.getStep()))));
+        statusLabel.setText(statusText());
         runningLabel.setText("Sim Not Running");
     }
     public void slower_event(){
-        if (timer == null){timer = new Timer(delay, new_step);};
-        int new_delay = timer.getDelay()*2;
-        delay_value.setText(Integer.toString(new_delay));
-        timer.setDelay(new_delay);
+        delay = delay == 0 ? 1 : delay*2;
+        delay_value.setText(Integer.toString(delay));
+        scheduler.setStepsPerSecond(stepsPerSecond());
     }
     
     public void faster_event(){
-        if (timer == null){timer = new Timer(delay, new_step);};
-        int new_delay = timer.getDelay()/2;
-        delay_value.setText(Integer.toString(new_delay));
-        timer.setDelay(new_delay);
+        // A delay of 0 runs as fast as possible.
+        delay = delay/2;
+        delay_value.setText(Integer.toString(delay));
+        scheduler.setStepsPerSecond(stepsPerSecond());
+    }
+    
+    private double stepsPerSecond(){
+        return delay == 0 ? 0 : 1000.0 / delay;
     }
     
     public void run_to_event(){
+        // One batch: the views are only updated once the steps are done.
         int steps = Integer.parseInt(run_to.getText());
-        while (steps!=0){
-            sim.simulateOneStep();
-            steps -= 1;
-        }
-        statusLabel.setText(sim.getDetails().concat(for_status.concat(Integer.toString(sim.getStep()))));
+        sim.simulateBatch(steps, 0, null);
+        statusLabel.setText(statusText());
     }
     
     public void load_event(){
-        chooser.showSaveDialog(null);
+        getChooser().showSaveDialog(null);
     }
     
     public void save_event(){
-        chooser.showSaveDialog(null);
+        getChooser().showSaveDialog(null);
     }
     
-    ActionListener new_step = new ActionListener() {
-        public void actionPerformed(ActionEvent evt){
-            sim.simulateOneStep();
-            statusLabel.setText(sim.getDetails().concat(for_status.concat(Integer.toString(sim.getStep()))));
-            String command = evt.getActionCommand();
-            
-            if(command.equals("save") || command.equals("load")){
-                   int r = chooser.showSaveDialog(null);
- 
-                   if (r == JFileChooser.APPROVE_OPTION){
-                    error_pane = new JOptionPane("Not Implemented");
-                }
-            }
+    private JFileChooser getChooser(){
+        if (chooser == null){chooser = new JFileChooser();}
+        return chooser;
+    }
+    
+    /**
+     * Called on the scheduler thread when steps are due; runs them on the
+     * event thread, merging steps that arrive while a batch is waiting.
+     */
+    private void stepsDue(int count){
+        pendingSteps.addAndGet(count);
+        if(drainPosted.compareAndSet(false, true)){
+            SwingUtilities.invokeLater(this::new_steps);
+        }
+    }
+    
+    private void new_steps(){
+        drainPosted.set(false);
+        int count = pendingSteps.getAndSet(0);
+        if(scheduler.isRunning()){
+            sim.simulateBatch(count, 0, null);
+            statusLabel.setText(statusText());
         }
-    };
+        scheduler.completed(count);
+    }
     
     public Simulator getSimulator(){
         return sim;
     }
     
+    /**
+     * The counts and step number, both taken from one snapshot.
+     */
+    private String statusText(){
+        StepSnapshot now = sim.getSnapshot();
+        return now.getDetails().concat(for_status.concat(Integer.toString(now.getStep())));
+    }
+    
     public void quit(){
-       sim.endSimulation();
+       scheduler.shutdown();
+       if(sim != null){
+           sim.endSimulation();
+       }
        frame.setVisible(false);
        frame.dispose();
     }
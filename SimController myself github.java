@@ -2,13 +2,15 @@ package sim;
 
 import java.awt.*;
 import javax.swing.*;
-import javax.swing.Timer;
 import java.awt.event.*;
 import java.util.*;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.io.File;
 import java.io.IOException;
 import javax.swing.JLabel;
@@ -37,6 +39,10 @@ public class SimController extends JFrame
     private static final int DEFAULT_HEIGHT = 400;
     
     private static final String TITLE = "Sim Control";
+    // Where the step profile is written when the simulation ends.
+    private static final String PROFILE_FILE = "step-profile.txt";
+    // Steps run between updates of the views while running to a step.
+    private static final int RUN_TO_BATCH = 500;
     private Simulator sim;
     
 
@@ -55,18 +61,29 @@ public class SimController extends JFrame
     private JMenuItem loadItem;
     private JMenuItem saveItem;
     private JMenuItem quitItem;
+    private JMenuItem compareItem;
+    private JMenu profileMenu;
+    private JCheckBoxMenuItem profileItem;
+    private JMenuItem showProfileItem;
 
     private boolean running;
     private boolean runTo;
     private int runToStep;
     private int timer;
     private int speed;
-    private Timer t;
+    // Delivers steps while running; one for the lifetime of the controller.
+    private StepScheduler scheduler;
+    // Steps due from the scheduler but not yet run on the event thread.
+    private AtomicInteger pendingSteps = new AtomicInteger();
+    private AtomicBoolean drainPosted = new AtomicBoolean();
     
     private JLabel status;
     private JLabel mbar;
     
-    private JFileChooser chooser = new JFileChooser();
+    // Built on first use, it is slow to create.
+    private JFileChooser chooser = null;
+    // The profiler attached last, kept to show after profiling stops.
+    private StepProfiler lastProfiler = null;
     /**
      * Create a view of the given width and height.
      * @param width The simulation's width.
@@ -75,20 +92,73 @@ public class SimController extends JFrame
     public SimController()
     {
         super(TITLE);
-        sim = new Simulator();
         running = false;
         runTo = false;
         runToStep = 0;
         timer = 0;
         speed = 100;
+        scheduler = new StepScheduler(stepsPerSecond(), this::stepsDue);
         createComponents();
         setLayout(new BorderLayout());
         add(menuBar, BorderLayout.NORTH);
         
         add(createControlPlane(), BorderLayout.SOUTH);
+        setControlsEnabled(false);
         pack();
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setVisible(true);
+        
+        // Populate the field while the frame comes up; the views are
+        // added on the event thread once the engine is ready.
+        new Thread(this::createSimulator, "Simulator Setup").start();
+    }
+
+    /**
+     * Build the simulator off the event thread, then hand it over.
+     * If it cannot be built, say so on the event thread; the controls
+     * stay disabled.
+     */
+    private void createSimulator()
+    {
+        try {
+            Simulator built = new Simulator(false);
+            SwingUtilities.invokeLater(() -> {
+                sim = built;
+                sim.showViews();
+                showStatus("");
+                setControlsEnabled(true);
+            });
+        }
+        catch(RuntimeException | Error e) {
+            SwingUtilities.invokeLater(() -> setupFailed(e));
+        }
+    }
+
+    /**
+     * Report a simulator that could not be built.
+     */
+    private void setupFailed(Throwable e)
+    {
+        System.out.println("Error setting up the simulator: " + e);
+        mbar.setText("Setup failed: " + e);
+        JOptionPane.showMessageDialog(this, "The simulator could not be set up:\n" + e,
+                                      TITLE, JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Enable or disable every control that uses the simulator.
+     */
+    private void setControlsEnabled(boolean enabled)
+    {
+        stepButton.setEnabled(enabled);
+        runButton.setEnabled(enabled);
+        stopButton.setEnabled(enabled);
+        resetButton.setEnabled(enabled);
+        runToButton.setEnabled(enabled);
+        compareItem.setEnabled(enabled);
+        profileItem.setEnabled(enabled);
+        showProfileItem.setEnabled(enabled);
+        quitItem.setEnabled(enabled);
     }
 
     /**
@@ -130,8 +200,16 @@ public class SimController extends JFrame
         quitItem = new JMenuItem("Quit");
         fileMenu.add(loadItem);
         fileMenu.add(saveItem);
+        compareItem = new JMenuItem("Compare Runs...");
+        fileMenu.add(compareItem);
         fileMenu.add(quitItem);
         menuBar.add(fileMenu);
+        profileMenu = new JMenu("Profile");
+        profileItem = new JCheckBoxMenuItem("Profile Steps");
+        showProfileItem = new JMenuItem("Show Profile");
+        profileMenu.add(profileItem);
+        profileMenu.add(showProfileItem);
+        menuBar.add(profileMenu);
         stepButton = new JButton("Step");
         runButton = new JButton("Run");
         stopButton = new JButton("Stop");
@@ -185,14 +263,107 @@ public class SimController extends JFrame
                 quit();
             }
         });
+        compareItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                compareRuns();
+            }
+        });
+        profileItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setProfiling(profileItem.isSelected());
+            }
+        });
+        showProfileItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showProfile();
+            }
+        });
         
         loadItem.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                chooser.showSaveDialog(null);
+                getChooser().showSaveDialog(null);
             }
         });
     }
 
+    /**
+     * Open a dashboard running several seeds of the default field side by
+     * side, each on its own thread, alongside this simulation.
+     */
+    private void compareRuns()
+    {
+        String answer = JOptionPane.showInputDialog(this, "Number of runs:",
+                                                    Runtime.getRuntime().availableProcessors());
+        if(answer == null) {
+            return;
+        }
+        int count;
+        try {
+            count = Integer.parseInt(answer.trim());
+        }
+        catch(NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Not a number: " + answer);
+            return;
+        }
+        if(count <= 0) {
+            return;
+        }
+        SimDashboard dashboard = new SimDashboard();
+        for(int seed = 1; seed <= count; seed++) {
+            dashboard.addRun(sim.getField().getDepth(), sim.getField().getWidth(), seed);
+        }
+        dashboard.start();
+    }
+
+    /**
+     * Start or stop measuring the time and allocation of each step. The
+     * measurements are kept when profiling stops, and written to
+     * PROFILE_FILE when the simulation ends.
+     */
+    private void setProfiling(boolean on)
+    {
+        if(sim == null) {
+            profileItem.setSelected(false);
+            return;
+        }
+        if(on) {
+            StepProfiler profiler = new StepProfiler(sim.getSpeciesRegistry());
+            profiler.setReportFile(PROFILE_FILE);
+            sim.setProfiler(profiler);
+            lastProfiler = profiler;
+        }
+        else {
+            sim.setProfiler(null);
+        }
+    }
+
+    /**
+     * Show the measurements of the last profiler started.
+     */
+    private void showProfile()
+    {
+        if(lastProfiler == null) {
+            JOptionPane.showMessageDialog(this, "Turn on Profile Steps first.");
+            return;
+        }
+        JTextArea report = new JTextArea(lastProfiler.getReport());
+        report.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        report.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(report), "Step Profile",
+                                      JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /**
+     * @return The file chooser, created the first time it is needed.
+     */
+    private JFileChooser getChooser()
+    {
+        if(chooser == null) {
+            chooser = new JFileChooser();
+        }
+        return chooser;
+    }
+
     /**
      * Run the simulation.
      */
@@ -204,36 +375,89 @@ public class SimController extends JFrame
         speedField.setText(Integer.toString(speed));
         status.setText("SIM RUNNING");
         
-        t = new Timer(speed, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                step();
-                mbar.setText("["+sim.getStep()+"]" + sim.getDetails());
-            }
-        });
         runButton.setEnabled(false);
-        t.start();
+        scheduler.start();
     }
 
     /**
-     * Run the simulation to the given step.
+     * Run the simulation to the given step as fast as it will go, showing
+     * the state only every RUN_TO_BATCH steps. A step already passed is
+     * replayed from the start of the run in the background, with every
+     * control that uses the simulator disabled, and shown once reached.
      */
     public void runTo()
     {
+        int target = Integer.parseInt(runToField.getText());
+        stop();
+        if(target < sim.getStep()) {
+            replay(target);
+            return;
+        }
         running = true;
         runTo = true;
-        runToStep = Integer.parseInt(runToField.getText());
+        runToStep = target;
         status.setText("Sim Running");
-        t = new Timer(speed, new ActionListener() {
-            public void actionPerformed(ActionEvent e) {
-                
-                step();
-                if (sim.getStep()==runToStep){
-                    stop();
+        runButton.setEnabled(false);
+        SwingUtilities.invokeLater(this::runToBatch);
+    }
+
+    /**
+     * Take the simulator back to the given step on a worker thread. The
+     * controls are disabled first, so nothing on the event thread uses
+     * the simulator until done() has collected the worker's result, which
+     * makes everything the worker did visible here.
+     */
+    private void replay(int target)
+    {
+        setControlsEnabled(false);
+        status.setText("SIM REPLAYING");
+        new SwingWorker<Void, Void>() {
+            protected Void doInBackground()
+            {
+                sim.rewindTo(target);
+                return null;
+            }
+
+            protected void done()
+            {
+                try {
+                    get();
+                    sim.showViews();
+                    timer = sim.getStep();
+                    timerField.setText("" + timer);
+                    showStatus("");
+                }
+                catch(InterruptedException | ExecutionException e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    System.out.println("Error replaying the simulation: " + cause);
+                    mbar.setText("Replay failed: " + cause);
                 }
+                status.setText("SIM NOT RUNNING");
+                setControlsEnabled(true);
             }
-        });
-        
-        t.start();
+        }.execute();
+    }
+
+    /**
+     * Run the next batch of steps towards the Run To step, then let the
+     * event thread catch up before the next; Stop, Run or Reset end it,
+     * as does a simulation that is no longer viable.
+     */
+    private void runToBatch()
+    {
+        if(!runTo) {
+            return;
+        }
+        int count = Math.min(RUN_TO_BATCH, runToStep - sim.getStep());
+        timer += sim.simulateBatch(count, 0, null);
+        timerField.setText("" + timer);
+        showStatus("");
+        if(sim.getStep() >= runToStep || !sim.isViable()) {
+            stop();
+        }
+        else {
+            SwingUtilities.invokeLater(this::runToBatch);
+        }
     }
 
     /**
@@ -246,7 +470,7 @@ public class SimController extends JFrame
         runToStep = 0;
         status.setText("SIM NOT RUNNING");
         runButton.setEnabled(true);
-        t.stop();
+        scheduler.stop();
     }
 
     /**
@@ -263,7 +487,8 @@ public class SimController extends JFrame
         status.setText("SIM NOT RUNNING");
         mbar.setText("STATUS BAR");
         runButton.setEnabled(true);
-        t.stop();
+        scheduler.stop();
+        scheduler.setStepsPerSecond(stepsPerSecond());
     }
 
     /**
@@ -274,7 +499,56 @@ public class SimController extends JFrame
         sim.simulateOneStep();
         timer++;
         timerField.setText("" + timer);
-        mbar.setText("["+sim.getStep()+"]" + sim.getDetails());
+        showStatus("");
+    }
+
+    /**
+     * Show the step and counts from one snapshot, so they always agree.
+     * @param suffix Text to add after the counts.
+     */
+    private void showStatus(String suffix)
+    {
+        StepSnapshot now = sim.getSnapshot();
+        mbar.setText("[" + now.getStep() + "]" + now.getDetails() + suffix);
+    }
+
+    /**
+     * Called on the scheduler thread when steps are due. The steps are
+     * run on the event thread; while one batch is waiting to run, later
+     * steps are added to it rather than queueing more events.
+     */
+    private void stepsDue(int count)
+    {
+        pendingSteps.addAndGet(count);
+        if(drainPosted.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::runPendingSteps);
+        }
+    }
+
+    /**
+     * Run the steps the scheduler has handed over as one batch, then
+     * update the views and labels once.
+     */
+    private void runPendingSteps()
+    {
+        drainPosted.set(false);
+        int count = pendingSteps.getAndSet(0);
+        if(!running) {
+            scheduler.completed(count);
+            return;
+        }
+        timer += sim.simulateBatch(count, 0, null);
+        scheduler.completed(count);
+        timerField.setText("" + timer);
+        showStatus(" (" + Math.round(scheduler.getAchievedRate()) + " steps/s)");
+    }
+
+    /**
+     * @return The scheduler rate for the current delay; 0 means unlimited.
+     */
+    private double stepsPerSecond()
+    {
+        return speed == 0 ? 0 : 1000.0 / speed;
     }
 
     /**
@@ -285,7 +559,7 @@ public class SimController extends JFrame
         if (speed != 0 && (speed*2) < 1025 ) {speed = speed *2 ;}
         else if(speed == 0){speed+=1;}
         else{speed=speed;}
-        t.setDelay(speed);
+        scheduler.setStepsPerSecond(stepsPerSecond());
         speedField.setText(Integer.toString(speed));
     }
 
@@ -294,8 +568,9 @@ public class SimController extends JFrame
      */
     public void faster()
     {
-        if ((speed / 2) != 0 ) {speed = speed / 2;}
-        t.setDelay(speed);
+        // Halving a delay of 1 gives 0: run as fast as possible.
+        if (speed != 0 ) {speed = speed / 2;}
+        scheduler.setStepsPerSecond(stepsPerSecond());
         speedField.setText(Integer.toString(speed));
     }
 
@@ -304,9 +579,14 @@ public class SimController extends JFrame
      */
      public void quit()
     {
-        t.stop();
+        scheduler.shutdown();
         this.dispose();
-        sim.endSimulation();
+        if(sim != null) {
+            if(sim.getProfiler() == null && lastProfiler != null) {
+                lastProfiler.writeReport();
+            }
+            sim.endSimulation();
+        }
         this.setVisible(false);
         this.dispose();
         //System.exit(0);
@@ -317,7 +597,7 @@ public class SimController extends JFrame
      */
     public static void main(String[] args)
     {
-        new Simulator();
+        new Simulator().showViews();
     }
     
     public Simulator getSimulator()
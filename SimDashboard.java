@@ -0,0 +1,371 @@
+package sim;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.border.TitledBorder;
+
+/**
+ * Several simulations side by side, for comparing scenarios.
+ *
+ * Each simulation steps as fast as it can on a thread of its own, so N
+ * runs use N cores instead of taking turns on the event thread. As in
+ * EnsembleRunner, each thread loads its own copy of the sim package so
+ * the runs never share Randomizer or any other static state, and a run
+ * with a given seed is the same as it would be alone.
+ *
+ * The window is refreshed at a fixed frame rate by a single Swing timer.
+ * At each refresh it takes the latest frame each simulation has handed
+ * over and asks for another; a simulation copies its grid and counts
+ * into a new frame only when one has been asked for, so the copying
+ * costs at most one per refresh however fast it steps.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class SimDashboard extends JFrame
+{
+    private static final String TITLE = "Simulation Dashboard";
+    private static final int FRAMES_PER_SECOND = 20;
+    // The size of each run's view, in pixels.
+    private static final int VIEW_WIDTH = 360;
+    private static final int VIEW_HEIGHT = 240;
+    // How long a paused or finished simulation sleeps between checks.
+    private static final long IDLE_NANOS = 10_000_000L;
+    // The name of the method each isolated copy of this class runs.
+    private static final String RUN_METHOD = "runIsolated";
+
+    private List<Run> runs = new ArrayList<>();
+    private Timer refresh;
+    private boolean started = false;
+
+    /**
+     * Main method.
+     * Usage: java sim.SimDashboard [runs] [depth] [width]
+     * Runs the given number of simulations, with seeds 1, 2, 3...
+     */
+    public static void main(String[] args)
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0])
+                                    : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 80;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+        SwingUtilities.invokeLater(() -> {
+            SimDashboard dashboard = new SimDashboard();
+            for(int i = 1; i <= count; i++) {
+                dashboard.addRun(depth, width, i);
+            }
+            dashboard.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            dashboard.start();
+        });
+    }
+
+    /**
+     * Create an empty dashboard. Add runs, then start it.
+     */
+    public SimDashboard()
+    {
+        super(TITLE);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e)
+            {
+                shutdown();
+            }
+        });
+        refresh = new Timer(1000 / FRAMES_PER_SECOND, e -> refresh());
+    }
+
+    /**
+     * Add a simulation to the dashboard. Runs can only be added before
+     * the dashboard is started.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param seed The seed of the run.
+     */
+    public void addRun(int depth, int width, long seed)
+    {
+        if(started) {
+            throw new IllegalStateException("The dashboard has already started");
+        }
+        runs.add(new Run(depth, width, seed));
+    }
+
+    /**
+     * Lay out the views, show the window and start every simulation.
+     */
+    public void start()
+    {
+        started = true;
+        int columns = (int) Math.ceil(Math.sqrt(runs.size()));
+        int rows = Math.max(1, (runs.size() + columns - 1) / Math.max(1, columns));
+        JPanel views = new JPanel(new GridLayout(rows, columns));
+        for(Run run : runs) {
+            views.add(run.panel);
+        }
+        JPanel toolbar = new JPanel(new FlowLayout());
+        JButton runButton = new JButton("Run All");
+        JButton pauseButton = new JButton("Pause All");
+        runButton.addActionListener(e -> setPaused(false));
+        pauseButton.addActionListener(e -> setPaused(true));
+        toolbar.add(runButton);
+        toolbar.add(pauseButton);
+
+        setLayout(new BorderLayout());
+        add(views, BorderLayout.CENTER);
+        add(toolbar, BorderLayout.SOUTH);
+        pack();
+        setVisible(true);
+
+        for(Run run : runs) {
+            run.worker.start();
+        }
+        refresh.start();
+    }
+
+    /**
+     * Pause or resume every simulation.
+     */
+    public void setPaused(boolean paused)
+    {
+        for(Run run : runs) {
+            run.paused.set(paused);
+        }
+    }
+
+    /**
+     * Show the latest frame from each simulation, and ask each for the next.
+     */
+    private void refresh()
+    {
+        long now = System.nanoTime();
+        for(Run run : runs) {
+            ByteBuffer frame = run.frame.getAndSet(null);
+            if(frame != null) {
+                run.show(frame, now);
+            }
+            run.frameWanted.set(true);
+        }
+    }
+
+    /**
+     * Stop every simulation and let go of their copies of the classes.
+     */
+    private void shutdown()
+    {
+        refresh.stop();
+        for(Run run : runs) {
+            run.stopped.set(true);
+        }
+        for(Run run : runs) {
+            try {
+                run.worker.join();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            run.close();
+        }
+    }
+
+    /**
+     * Run one simulation until told to stop, handing over a frame each
+     * time one is asked for. This is called reflectively on an isolated
+     * copy of this class, so it only takes JDK types.
+     *
+     * A frame holds the step, the time the last step took, the field's
+     * depth and width, the number of species and their populations, all
+     * as ints apart from the time, then the grid row after row.
+     */
+    public static void runIsolated(int depth, int width, long seed,
+                                   AtomicBoolean paused, AtomicBoolean stopped,
+                                   AtomicBoolean frameWanted, AtomicReference<ByteBuffer> frame)
+    {
+        Simulator sim = new Simulator(depth, width, false);
+        sim.reset(seed);
+        while(!stopped.get()) {
+            if(paused.get() || !sim.isViable()) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+            else {
+                sim.simulateOneStep();
+            }
+            if(frameWanted.getAndSet(false)) {
+                frame.set(makeFrame(sim));
+            }
+        }
+    }
+
+    /**
+     * @return A frame holding a copy of the simulation's latest step.
+     */
+    private static ByteBuffer makeFrame(Simulator sim)
+    {
+        StepSnapshot snapshot = sim.getSnapshot();
+        SpeciesGrid grid = sim.getSpeciesGrid();
+        int species = snapshot.getSpeciesRegistry().size();
+        int cells = grid.getDepth() * grid.getWidth();
+        ByteBuffer frame = ByteBuffer.allocate(24 + 4 * species + cells);
+        frame.putInt(snapshot.getStep());
+        frame.putLong(snapshot.getStepNanos());
+        frame.putInt(grid.getDepth());
+        frame.putInt(grid.getWidth());
+        frame.putInt(species);
+        for(int id = 0; id < species; id++) {
+            frame.putInt(snapshot.getPopulation(id));
+        }
+        grid.exportRegion(0, 0, grid.getDepth(), grid.getWidth(), frame);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * One simulation: its thread, what it shares with the thread, and its view.
+     */
+    private class Run
+    {
+        private final long seed;
+        private final SpeciesRegistry species = SpeciesRegistry.standard();
+        // Shared with the simulation's thread.
+        private final AtomicBoolean paused = new AtomicBoolean(false);
+        private final AtomicBoolean stopped = new AtomicBoolean(false);
+        private final AtomicBoolean frameWanted = new AtomicBoolean(true);
+        private final AtomicReference<ByteBuffer> frame = new AtomicReference<>();
+        private final Thread worker;
+        private URLClassLoader loader;
+
+        private final JPanel panel = new JPanel(new BorderLayout());
+        private final ViewportView view;
+        private final JLabel status = new JLabel("Starting");
+        // The step and time of the last frame shown, for the rate.
+        private int lastStep = -1;
+        private long lastNanos;
+
+        public Run(int depth, int width, long seed)
+        {
+            this.seed = seed;
+            view = new ViewportView(species, VIEW_WIDTH, VIEW_HEIGHT);
+            view.zoomAbout(fitZoom(depth, width), 0, 0);
+            panel.setBorder(new TitledBorder(depth + "x" + width + " seed " + seed));
+            panel.add(view, BorderLayout.CENTER);
+            panel.add(status, BorderLayout.SOUTH);
+            worker = new Thread(() -> run(depth, width), "Simulation " + seed);
+            worker.setDaemon(true);
+        }
+
+        /**
+         * The body of the simulation's thread.
+         */
+        private void run(int depth, int width)
+        {
+            try {
+                Method method = loadIsolated();
+                method.invoke(null, depth, width, seed, paused, stopped, frameWanted, frame);
+            }
+            catch(InvocationTargetException e) {
+                reportFailure(e.getCause());
+            }
+            catch(ReflectiveOperationException | RuntimeException e) {
+                reportFailure(e);
+            }
+        }
+
+        /**
+         * Show a frame handed over by the simulation.
+         */
+        private void show(ByteBuffer frame, long now)
+        {
+            int step = frame.getInt();
+            long stepNanos = frame.getLong();
+            int depth = frame.getInt();
+            int width = frame.getInt();
+            int[] populations = new int[frame.getInt()];
+            for(int id = 0; id < populations.length; id++) {
+                populations[id] = frame.getInt();
+            }
+            SpeciesGrid grid = new SpeciesGrid(depth, width);
+            grid.importRegion(0, 0, depth, width, frame);
+            grid.setGeneration(step, populations);
+            view.showGrid(grid);
+
+            StepSnapshot snapshot = new StepSnapshot(step, populations, species, stepNanos);
+            String rate = "";
+            if(lastStep >= 0 && now > lastNanos) {
+                rate = " (" + Math.round((step - lastStep) * 1e9 / (now - lastNanos)) + " steps/s)";
+            }
+            status.setText("[" + step + "]" + snapshot.getDetails() + rate);
+            lastStep = step;
+            lastNanos = now;
+        }
+
+        private void reportFailure(Throwable e)
+        {
+            System.out.println("Simulation " + seed + " failed: " + e);
+            SwingUtilities.invokeLater(() -> status.setText("Failed: " + e));
+        }
+
+        /**
+         * Load a private copy of the sim classes and find the run method in it.
+         */
+        private Method loadIsolated() throws ReflectiveOperationException
+        {
+            URL source = SimDashboard.class.getProtectionDomain().getCodeSource().getLocation();
+            loader = new EnsembleRunner.IsolatingLoader(new URL[] { source },
+                                                        SimDashboard.class.getClassLoader());
+            Class<?> dashboard = loader.loadClass(SimDashboard.class.getName());
+            return dashboard.getMethod(RUN_METHOD, int.class, int.class, long.class,
+                                       AtomicBoolean.class, AtomicBoolean.class,
+                                       AtomicBoolean.class, AtomicReference.class);
+        }
+
+        private void close()
+        {
+            if(loader == null) {
+                return;
+            }
+            try {
+                loader.close();
+            }
+            catch(IOException e) {
+                System.out.println("Error closing class loader: " + e);
+            }
+        }
+    }
+
+    /**
+     * @return The largest zoom level at which a whole field fits in a view.
+     */
+    private static int fitZoom(int depth, int width)
+    {
+        int level = 0;
+        while(level < 4 && (width << (level + 1)) <= VIEW_WIDTH
+              && (depth << (level + 1)) <= VIEW_HEIGHT) {
+            level++;
+        }
+        while(level > -6 && (width >> -level) > VIEW_WIDTH
+              || level > -6 && (depth >> -level) > VIEW_HEIGHT) {
+            level--;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,224 @@
+package sim;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Run simulations from the command line, without any views.
+ *
+ * Usage:
+ *   java sim.SimulatorCli [--depth 80] [--width 120] [--seed 1] [--steps 4000]
+ *                         [--runs 1] [--threads 1] [--stop extinct]
+ *                         [--out populations.csv] [--format csv|bin]
+ *                         [--frames frames.bin] [--rules species.properties]
+ *                         [--history history.simh] [--density 0] [--density-cell 8]
+ *
+ * Each run uses the next seed up from --seed. The population of each
+ * species after every step is written to --out, and the throughput is
+ * printed at the end. Nothing here touches AWT or Swing, so it starts
+ * quickly and runs with java.awt.headless=true. With --frames, a single
+ * run publishes every step for a FrameViewer in another process. With
+ * --rules, the species and their rules are read from a file (see
+ * SpeciesRegistry.load) and run on a RuleEngine. With --history, each
+ * run streams its counts to a HistoryExporter file as it goes (one file
+ * per seed when there are several runs, named with the seed), adding a
+ * density map of squares of --density-cell cells every --density steps.
+ *
+ * The binary format is big-endian: the int 0x53494d31 ("SIM1"), the
+ * number of runs and the number of species, then for each run its seed
+ * (long), its number of steps (int) and a count per species (ints, in
+ * species id order) for each step from 0.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class SimulatorCli
+{
+    private static final int BINARY_MAGIC = 0x53494d31;
+
+    private int depth = 80;
+    private int width = 120;
+    private long seed = 1;
+    private int steps = 4000;
+    private int runs = 1;
+    private int threads = 1;
+    private String stop = "extinct";
+    private String out = null;
+    private String format = "csv";
+    private String frames = null;
+    private String rules = null;
+    private String history = null;
+    private int density = 0;
+    private int densityCell = 8;
+    // The species being run.
+    private SpeciesRegistry registry = SpeciesRegistry.standard();
+
+    /**
+     * Main method.
+     */
+    public static void main(String[] args)
+    {
+        System.setProperty("java.awt.headless", "true");
+        SimulatorCli cli = new SimulatorCli();
+        try {
+            cli.parse(args);
+        }
+        catch(IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java sim.SimulatorCli [--depth n] [--width n] [--seed n]"
+                + " [--steps n] [--runs n] [--threads n] [--stop spec]"
+                + " [--out file] [--format csv|bin] [--frames file] [--rules file]"
+                + " [--history file] [--density n] [--density-cell n]");
+            System.exit(2);
+        }
+        try {
+            cli.run();
+        }
+        catch(IOException e) {
+            System.err.println("Error writing to file: " + e);
+            System.exit(1);
+        }
+        catch(InterruptedException e) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the options from the command line.
+     */
+    private void parse(String[] args)
+    {
+        for(int i = 0; i < args.length; i += 2) {
+            if(i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[i + 1];
+            try {
+                switch(args[i]) {
+                    case "--depth":   depth = Integer.parseInt(value); break;
+                    case "--width":   width = Integer.parseInt(value); break;
+                    case "--seed":    seed = Long.parseLong(value); break;
+                    case "--steps":   steps = Integer.parseInt(value); break;
+                    case "--runs":    runs = Integer.parseInt(value); break;
+                    case "--threads": threads = Integer.parseInt(value); break;
+                    case "--stop":    stop = value; StopCondition.parse(stop); break;
+                    case "--out":     out = value; break;
+                    case "--format":  format = value; break;
+                    case "--frames":  frames = value; break;
+                    case "--rules":   rules = value; break;
+                    case "--history": history = value; break;
+                    case "--density": density = Integer.parseInt(value); break;
+                    case "--density-cell": densityCell = Integer.parseInt(value); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + value);
+            }
+        }
+        if(!format.equals("csv") && !format.equals("bin")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        if(frames != null && runs != 1) {
+            throw new IllegalArgumentException("--frames needs a single run");
+        }
+        if(frames != null && rules != null) {
+            throw new IllegalArgumentException("--frames cannot be used with --rules");
+        }
+        if(history != null && rules != null) {
+            throw new IllegalArgumentException("--history cannot be used with --rules");
+        }
+        if(density > 0 && history == null) {
+            throw new IllegalArgumentException("--density needs --history");
+        }
+        if(density > 0 && densityCell <= 0) {
+            throw new IllegalArgumentException("--density-cell must be at least 1");
+        }
+    }
+
+    /**
+     * Run the simulations, write the populations and print the throughput.
+     */
+    private void run() throws IOException, InterruptedException
+    {
+        long[] seeds = new long[runs];
+        for(int i = 0; i < runs; i++) {
+            seeds[i] = seed + i;
+        }
+        EnsembleRunner runner = new EnsembleRunner(depth, width, steps, threads);
+        runner.setStopCondition(stop);
+        runner.setFramesFile(frames);
+        runner.setHistoryFile(history, density, densityCell);
+        if(rules != null) {
+            registry = SpeciesRegistry.load(rules);
+            runner.setRulesFile(rules);
+        }
+
+        long start = System.nanoTime();
+        List<EnsembleRunner.RunResult> results = runner.run(seeds);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if(out != null) {
+            if(format.equals("csv")) {
+                writeCsv(results);
+            }
+            else {
+                writeBinary(results);
+            }
+        }
+
+        long totalSteps = 0;
+        for(EnsembleRunner.RunResult result : results) {
+            totalSteps += result.getSteps();
+        }
+        System.out.println(EnsembleRunner.getSummary(results, registry));
+        System.out.printf("Steps: %d  Time: %.3f s  Steps/s: %.1f  Cell updates/s: %.3e%n",
+                          totalSteps, seconds, totalSteps / seconds,
+                          (double) totalSteps * depth * width / seconds);
+    }
+
+    private void writeCsv(List<EnsembleRunner.RunResult> results) throws IOException
+    {
+        try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(out))) {
+            writer.write("seed,step");
+            for(int id = 0; id < registry.size(); id++) {
+                writer.write("," + registry.get(id).getName());
+            }
+            writer.newLine();
+            for(EnsembleRunner.RunResult result : results) {
+                for(int step = 0; step <= result.getSteps(); step++) {
+                    writer.write(result.getSeed() + "," + step);
+                    for(int id = 0; id < result.getSpecies(); id++) {
+                        writer.write("," + result.getSeries(id)[step]);
+                    }
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private void writeBinary(List<EnsembleRunner.RunResult> results) throws IOException
+    {
+        try(DataOutputStream data = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(Paths.get(out))))) {
+            data.writeInt(BINARY_MAGIC);
+            data.writeInt(results.size());
+            data.writeInt(registry.size());
+            for(EnsembleRunner.RunResult result : results) {
+                data.writeLong(result.getSeed());
+                data.writeInt(result.getSteps());
+                for(int step = 0; step <= result.getSteps(); step++) {
+                    for(int id = 0; id < result.getSpecies(); id++) {
+                        data.writeInt(result.getSeries(id)[step]);
+                    }
+                }
+            }
+        }
+    }
+}
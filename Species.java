@@ -0,0 +1,149 @@
+package sim;
+
+/**
+ * A kind of animal in the simulation: its small integer id, which
+ * indexes every per-species array in the engine, and its parameters.
+ * Species are created by a SpeciesRegistry.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class Species
+{
+    private int id;
+    private String name;
+    // The colour in views, as an RGB value so headless runs need no AWT.
+    private int rgb;
+    // Behaviour parameters.
+    private int breedingAge;
+    private int maxAge;
+    private double breedingProbability;
+    private int maxLitterSize;
+    private int foodValue;
+    // The chance of a cell holding one of these when the field is populated.
+    private double creationProbability;
+    // The ids of the species this one eats, as bits; 0 for a prey species.
+    private long preyMask;
+
+    /**
+     * Create a species. Use SpeciesRegistry.register, which assigns the id.
+     */
+    Species(int id, String name, int rgb, int breedingAge, int maxAge,
+            double breedingProbability, int maxLitterSize, int foodValue)
+    {
+        this.id = id;
+        this.name = name;
+        this.rgb = rgb;
+        this.breedingAge = breedingAge;
+        this.maxAge = maxAge;
+        this.breedingProbability = breedingProbability;
+        this.maxLitterSize = maxLitterSize;
+        this.foodValue = foodValue;
+    }
+
+    /**
+     * @return The id, from 0 up to the number of species in the registry.
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * @return The code for this species in a SpeciesGrid: the id plus one,
+     *         since 0 marks an empty cell.
+     */
+    public byte getCode()
+    {
+        return (byte) (id + 1);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getRGB()
+    {
+        return rgb;
+    }
+
+    /**
+     * @return The age at which an animal can start to breed.
+     */
+    public int getBreedingAge()
+    {
+        return breedingAge;
+    }
+
+    /**
+     * @return The age at which an animal dies.
+     */
+    public int getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * @return The chance of breeding in a step.
+     */
+    public double getBreedingProbability()
+    {
+        return breedingProbability;
+    }
+
+    /**
+     * @return The most young born at once.
+     */
+    public int getMaxLitterSize()
+    {
+        return maxLitterSize;
+    }
+
+    /**
+     * @return The number of steps a predator can go on after eating one.
+     */
+    public int getFoodValue()
+    {
+        return foodValue;
+    }
+
+    /**
+     * @return The chance of a cell starting with one of these animals.
+     */
+    public double getCreationProbability()
+    {
+        return creationProbability;
+    }
+
+    void setCreationProbability(double creationProbability)
+    {
+        this.creationProbability = creationProbability;
+    }
+
+    /**
+     * @return true if this species eats the species with the given id.
+     */
+    public boolean eats(int id)
+    {
+        return (preyMask & (1L << id)) != 0;
+    }
+
+    /**
+     * @return The species this one eats, one bit per species id.
+     */
+    public long getPreyMask()
+    {
+        return preyMask;
+    }
+
+    void addPrey(int id)
+    {
+        preyMask |= 1L << id;
+    }
+
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,444 @@
+package sim;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A compact copy of the field holding one byte per cell: the code of
+ * the species in it (see Species.getCode), or EMPTY.
+ *
+ * The simulator rebuilds it from its list of animals after every step,
+ * which touches only the occupied cells: the grid remembers which cells
+ * it has filled since it was last cleared, and clear() empties just
+ * those. Rectangular regions can then
+ * be copied out to (or in from) any ByteBuffer, direct or memory-mapped,
+ * a row at a time, so shipping a region to another process costs a bulk
+ * copy rather than a getObjectAt call per cell.
+ *
+ * The grid also keeps, for each square tile of TILE x TILE cells, the
+ * number of each species in it, brought up to date as cells are set and
+ * cleared, so that a zoomed-out view (see ViewportView) can colour a block
+ * of cells from a few tile counts rather than counting every cell in it.
+ *
+ * A grid also records the step it shows and the population of each
+ * species at that step. The simulator keeps two and swaps them at the
+ * end of a step, so each is rewritten every other step (see
+ * Simulator.getSpeciesGrid). To let another thread copy one safely, a
+ * rewrite is bracketed by beginWrite() and endWrite(), which move a
+ * sequence number to odd and back to even, as FramePublisher does; a
+ * copy made by tryCopyInto, tryCopyRegion or tryCopyTiles is kept only
+ * if the sequence was the same even number before and after it.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class SpeciesGrid
+{
+    // The code of an empty cell. A species' code is its id plus one.
+    public static final byte EMPTY = 0;
+    // The side of a tile, in cells: 2 to the power of TILE_SHIFT.
+    public static final int TILE_SHIFT = 3;
+    public static final int TILE = 1 << TILE_SHIFT;
+
+    private int depth;
+    private int width;
+    // The codes, row after row.
+    private byte[] codes;
+    // The number of tiles down and across, the last of each maybe partly
+    // outside the grid, and for each code but EMPTY the count of that
+    // code in each tile, row after row; grown as codes are first set.
+    private int tileRows;
+    private int tileCols;
+    private int[][] tileCounts = new int[0][];
+    // The cells filled since the last clear, unless there are too many to
+    // be worth listing, in which case every cell is cleared.
+    private int[] filled = new int[64];
+    private int filledCount = 0;
+    private boolean clearAll = false;
+    // The step shown, and the population of each species at that step.
+    private int step;
+    private int[] populations = new int[0];
+    // Odd while the grid is being rewritten, even otherwise.
+    private volatile long sequence = 0;
+
+    /**
+     * Create an empty grid.
+     * @param depth The number of rows.
+     * @param width The number of columns.
+     */
+    public SpeciesGrid(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        codes = new byte[depth * width];
+        tileRows = (depth + TILE - 1) >> TILE_SHIFT;
+        tileCols = (width + TILE - 1) >> TILE_SHIFT;
+    }
+
+    /**
+     * Empty every cell. Only the cells filled since the last clear are
+     * written, unless they were too many to list.
+     */
+    public void clear()
+    {
+        if(clearAll) {
+            Arrays.fill(codes, EMPTY);
+            for(int[] counts : tileCounts) {
+                Arrays.fill(counts, 0);
+            }
+        }
+        else {
+            for(int i = 0; i < filledCount; i++) {
+                int index = filled[i];
+                if(codes[index] != EMPTY) {
+                    tileCounts[codes[index] - 1][tileOf(index)]--;
+                    codes[index] = EMPTY;
+                }
+            }
+        }
+        filledCount = 0;
+        clearAll = false;
+    }
+
+    /**
+     * Start rewriting the grid. Copies begun by other threads before
+     * endWrite() will fail. Only one thread may write a grid.
+     */
+    public void beginWrite()
+    {
+        sequence = sequence + 1;
+        // Keep the writes that follow from being seen before the odd number.
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Finish rewriting the grid: it holds a whole generation again.
+     */
+    public void endWrite()
+    {
+        sequence = sequence + 1;
+    }
+
+    /**
+     * Copy the codes, step and populations into another grid of the same
+     * size, unless this grid is rewritten while they are copied. Safe to
+     * call from any thread.
+     * @param dest The grid to copy into. If the copy fails, what it holds
+     *             is undefined.
+     * @return true if dest now holds one whole generation, false if the
+     *         copy should be tried again.
+     */
+    public boolean tryCopyInto(SpeciesGrid dest)
+    {
+        if(dest.depth != depth || dest.width != width) {
+            throw new IllegalArgumentException("Cannot copy a " + depth + "x" + width
+                                               + " grid into a " + dest.depth + "x"
+                                               + dest.width + " grid");
+        }
+        long before = sequence;
+        if((before & 1) != 0) {
+            return false;
+        }
+        System.arraycopy(codes, 0, dest.codes, 0, codes.length);
+        int[][] tiles = tileCounts;
+        if(dest.tileCounts.length != tiles.length) {
+            dest.tileCounts = new int[tiles.length][tileRows * tileCols];
+        }
+        for(int code = 0; code < tiles.length; code++) {
+            System.arraycopy(tiles[code], 0, dest.tileCounts[code], 0, tiles[code].length);
+        }
+        int[] counts = populations;
+        if(dest.populations.length != counts.length) {
+            dest.populations = new int[counts.length];
+        }
+        System.arraycopy(counts, 0, dest.populations, 0, counts.length);
+        dest.step = step;
+        dest.clearAll = true;
+        // Keep the reads above from being moved after the check.
+        VarHandle.loadLoadFence();
+        return sequence == before;
+    }
+
+    /**
+     * Copy the codes of a rectangular region into an array, row after row,
+     * unless the grid is rewritten while they are copied. Safe to call
+     * from any thread.
+     * @param top The first row of the region.
+     * @param left The first column of the region.
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @param dest The array to copy into, of at least rows * cols.
+     * @return true if dest now holds the region as of one generation,
+     *         false if the copy should be tried again.
+     */
+    public boolean tryCopyRegion(int top, int left, int rows, int cols, byte[] dest)
+    {
+        checkRegion(top, left, rows, cols);
+        long before = sequence;
+        if((before & 1) != 0) {
+            return false;
+        }
+        for(int row = 0; row < rows; row++) {
+            System.arraycopy(codes, (top + row) * width + left, dest, row * cols, cols);
+        }
+        VarHandle.loadLoadFence();
+        return sequence == before;
+    }
+
+    /**
+     * Copy the counts of each species in a rectangle of tiles, unless the
+     * grid is rewritten while they are copied. Safe to call from any thread.
+     * @param top The first row of tiles.
+     * @param left The first column of tiles.
+     * @param rows The number of rows of tiles.
+     * @param cols The number of columns of tiles.
+     * @param dest For each species id, an array of at least rows * cols to
+     *             copy its counts into, row after row. Species not yet in
+     *             the grid get zeros; codes beyond dest are left out.
+     * @return true if dest now holds the counts as of one generation,
+     *         false if the copy should be tried again.
+     */
+    public boolean tryCopyTiles(int top, int left, int rows, int cols, int[][] dest)
+    {
+        if(top < 0 || left < 0 || rows < 0 || cols < 0
+           || top + rows > tileRows || left + cols > tileCols) {
+            throw new IndexOutOfBoundsException("Tiles " + rows + "x" + cols + " at ("
+                                                + top + ", " + left + ") are outside "
+                                                + tileRows + "x" + tileCols + " tiles");
+        }
+        long before = sequence;
+        if((before & 1) != 0) {
+            return false;
+        }
+        int[][] tiles = tileCounts;
+        for(int id = 0; id < dest.length; id++) {
+            if(id >= tiles.length) {
+                Arrays.fill(dest[id], 0, rows * cols, 0);
+                continue;
+            }
+            for(int row = 0; row < rows; row++) {
+                System.arraycopy(tiles[id], (top + row) * tileCols + left,
+                                 dest[id], row * cols, cols);
+            }
+        }
+        VarHandle.loadLoadFence();
+        return sequence == before;
+    }
+
+    /**
+     * Record the step this grid shows and the populations at that step.
+     * @param step The step.
+     * @param populations The population of each species, indexed by id;
+     *                    copied.
+     */
+    public void setGeneration(int step, int[] populations)
+    {
+        this.step = step;
+        if(this.populations.length != populations.length) {
+            this.populations = new int[populations.length];
+        }
+        System.arraycopy(populations, 0, this.populations, 0, populations.length);
+    }
+
+    /**
+     * @return The step this grid shows.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The population of a species at the step this grid shows.
+     */
+    public int getPopulation(int id)
+    {
+        return populations[id];
+    }
+
+    public void set(int row, int col, byte code)
+    {
+        int index = row * width + col;
+        byte old = codes[index];
+        if(old == code) {
+            return;
+        }
+        int tile = (row >> TILE_SHIFT) * tileCols + (col >> TILE_SHIFT);
+        if(old != EMPTY) {
+            tileCounts[old - 1][tile]--;
+        }
+        else {
+            remember(index);
+        }
+        if(code != EMPTY) {
+            if(code > tileCounts.length) {
+                growTiles(code);
+            }
+            tileCounts[code - 1][tile]++;
+        }
+        codes[index] = code;
+    }
+
+    /**
+     * @return The tile a cell is in.
+     */
+    private int tileOf(int index)
+    {
+        return (index / width >> TILE_SHIFT) * tileCols + (index % width >> TILE_SHIFT);
+    }
+
+    /**
+     * Make room for the tile counts of codes up to the given one.
+     */
+    private void growTiles(int code)
+    {
+        int[][] grown = Arrays.copyOf(tileCounts, code);
+        for(int i = tileCounts.length; i < code; i++) {
+            grown[i] = new int[tileRows * tileCols];
+        }
+        tileCounts = grown;
+    }
+
+    /**
+     * Count every code in every tile afresh, after the codes have been
+     * written in bulk.
+     */
+    private void recountTiles()
+    {
+        for(int[] counts : tileCounts) {
+            Arrays.fill(counts, 0);
+        }
+        for(int index = 0; index < codes.length; index++) {
+            int code = codes[index];
+            if(code > 0) {
+                if(code > tileCounts.length) {
+                    growTiles(code);
+                }
+                tileCounts[code - 1][tileOf(index)]++;
+            }
+        }
+    }
+
+    /**
+     * Note a cell that has been filled. Once more than an eighth of the
+     * cells have been listed, stop listing and clear the whole grid.
+     */
+    private void remember(int index)
+    {
+        if(clearAll) {
+            return;
+        }
+        if(filledCount == filled.length) {
+            if(filledCount >= codes.length / 8) {
+                clearAll = true;
+                return;
+            }
+            filled = Arrays.copyOf(filled, Math.min(2 * filledCount, codes.length / 8 + 1));
+        }
+        filled[filledCount++] = index;
+    }
+
+    public byte get(int row, int col)
+    {
+        return codes[row * width + col];
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @return The number of rows of tiles.
+     */
+    public int getTileRows()
+    {
+        return tileRows;
+    }
+
+    /**
+     * @return The number of columns of tiles.
+     */
+    public int getTileCols()
+    {
+        return tileCols;
+    }
+
+    /**
+     * @return A read-only view of the whole grid, row after row, without copying.
+     */
+    public ByteBuffer asReadOnlyBuffer()
+    {
+        return ByteBuffer.wrap(codes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Copy a rectangular region into a buffer, row after row.
+     * @param top The first row of the region.
+     * @param left The first column of the region.
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @param dest The buffer to copy into, from its position; or null to
+     *             allocate a direct buffer of the right size.
+     * @return The buffer, flipped ready for reading if it was allocated here.
+     */
+    public ByteBuffer exportRegion(int top, int left, int rows, int cols, ByteBuffer dest)
+    {
+        checkRegion(top, left, rows, cols);
+        boolean allocated = dest == null;
+        if(allocated) {
+            dest = ByteBuffer.allocateDirect(rows * cols);
+        }
+        if(left == 0 && cols == width) {
+            dest.put(codes, top * width, rows * width);
+        }
+        else {
+            for(int row = top; row < top + rows; row++) {
+                dest.put(codes, row * width + left, cols);
+            }
+        }
+        if(allocated) {
+            dest.flip();
+        }
+        return dest;
+    }
+
+    /**
+     * Copy a rectangular region in from a buffer holding it row after row.
+     * @param top The first row of the region.
+     * @param left The first column of the region.
+     * @param rows The number of rows.
+     * @param cols The number of columns.
+     * @param src The buffer to copy from, from its position.
+     */
+    public void importRegion(int top, int left, int rows, int cols, ByteBuffer src)
+    {
+        checkRegion(top, left, rows, cols);
+        clearAll = true;
+        if(left == 0 && cols == width) {
+            src.get(codes, top * width, rows * width);
+        }
+        else {
+            for(int row = top; row < top + rows; row++) {
+                src.get(codes, row * width + left, cols);
+            }
+        }
+        recountTiles();
+    }
+
+    private void checkRegion(int top, int left, int rows, int cols)
+    {
+        if(top < 0 || left < 0 || rows < 0 || cols < 0
+           || top + rows > depth || left + cols > width) {
+            throw new IndexOutOfBoundsException("Region " + rows + "x" + cols + " at ("
+                                                + top + ", " + left + ") is outside a "
+                                                + depth + "x" + width + " grid");
+        }
+    }
+}
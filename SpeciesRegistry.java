@@ -0,0 +1,305 @@
+package sim;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The species taking part in a simulation.
+ *
+ * Each species gets the next small integer id, and the engine keeps
+ * its per-species data (counts, history, colours) in arrays indexed by
+ * it. Finding the species of an animal goes through a ClassValue, which
+ * caches the answer on the animal's class, so hot loops need neither
+ * instanceof chains nor a map lookup per animal. The Simulator
+ * registers the class of any animal it first populates the field with
+ * that is not registered yet, so a new kind of animal needs no change
+ * to the engine.
+ *
+ * Views, profilers, exporters and engines size their per-species arrays
+ * when they are built, so a registry is frozen before any of them is:
+ * the Simulator freezes its own once it has first populated the field,
+ * and a RuleEngine freezes the one it is given. Registering a species
+ * after that is an error.
+ *
+ * Each species has a colour, used by every view. Unless one is given,
+ * species take the colours of the palette in turn, in order of id.
+ *
+ * A registry can also be read from a rules file for the RuleEngine,
+ * in java.util.Properties form:
+ *
+ *   species = rabbit, fox
+ *   rabbit.breedingAge = 5
+ *   rabbit.maxAge = 40
+ *   rabbit.breedingProbability = 0.12
+ *   rabbit.maxLitterSize = 4
+ *   rabbit.foodValue = 9
+ *   rabbit.creationProbability = 0.08
+ *   rabbit.color = 0000ff
+ *   fox.prey = rabbit
+ *   ...
+ *
+ * Ids follow the order of the species list. At most 64 species.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class SpeciesRegistry
+{
+    // The ids of the species in the standard registry.
+    public static final int RABBIT = 0;
+    public static final int FOX = 1;
+    // Prey sets are bit masks of species ids.
+    private static final int MAX_SPECIES = 64;
+    // The colours species take in turn: blue, red, green.
+    private static final int[] PALETTE = { 0x0000ff, 0xff0000, 0x00ff00 };
+
+    private List<Species> species = new ArrayList<>();
+    private Map<Class<?>, Species> byClass = new HashMap<>();
+    // Caches the species of each animal class, including subclasses.
+    // Replaced whenever a class is registered, since it may have cached
+    // "no species" for that class.
+    private ClassValue<Species> lookup = newLookup();
+    // Set once the species are fixed; see freeze.
+    private boolean frozen = false;
+
+    /**
+     * @return A registry of the Rabbit (id 0) and Fox (id 1) classes. How
+     *         they behave is up to the classes themselves.
+     */
+    public static SpeciesRegistry standard()
+    {
+        SpeciesRegistry registry = new SpeciesRegistry();
+        registry.register(Rabbit.class, "Rabbit");
+        registry.register(Fox.class, "Fox");
+        return registry;
+    }
+
+    /**
+     * @return Rabbits (id 0) and foxes (id 1) for the RuleEngine, with the
+     *         parameters of the original Rabbit and Fox classes and the
+     *         creation probabilities of the original Simulator, and the
+     *         same colours as standard().
+     */
+    public static SpeciesRegistry standardRules()
+    {
+        SpeciesRegistry registry = new SpeciesRegistry();
+        Species rabbit = registry.register(null, "Rabbit", PALETTE[RABBIT], 5, 40, 0.12, 4, 9);
+        Species fox = registry.register(null, "Fox", PALETTE[FOX], 15, 150, 0.08, 2, 0);
+        rabbit.setCreationProbability(0.08);
+        fox.setCreationProbability(0.02);
+        fox.addPrey(rabbit.getId());
+        return registry;
+    }
+
+    /**
+     * Read a registry from a rules file (see the class comment). The
+     * species are not tied to animal classes; they are for the RuleEngine.
+     * @param file The rules file.
+     * @return The registry.
+     */
+    public static SpeciesRegistry load(String file) throws IOException
+    {
+        Properties rules = new Properties();
+        try(Reader reader = Files.newBufferedReader(Paths.get(file))) {
+            rules.load(reader);
+        }
+        SpeciesRegistry registry = new SpeciesRegistry();
+        String[] names = required(rules, "species").split(",");
+        for(String name : names) {
+            name = name.trim();
+            try {
+                String color = rules.getProperty(name + ".color");
+                int rgb = color == null ? nextColor(registry.size())
+                                        : Integer.parseInt(color.trim(), 16);
+                Species added = registry.register(null, name, rgb,
+                    Integer.parseInt(required(rules, name + ".breedingAge")),
+                    Integer.parseInt(required(rules, name + ".maxAge")),
+                    Double.parseDouble(required(rules, name + ".breedingProbability")),
+                    Integer.parseInt(required(rules, name + ".maxLitterSize")),
+                    Integer.parseInt(rules.getProperty(name + ".foodValue", "0")));
+                added.setCreationProbability(
+                    Double.parseDouble(rules.getProperty(name + ".creationProbability", "0")));
+            }
+            catch(NumberFormatException e) {
+                throw new IOException(file + ": bad number for " + name + ": " + e.getMessage());
+            }
+        }
+        // Prey are named, so read them once every species has an id.
+        for(int id = 0; id < registry.size(); id++) {
+            Species predator = registry.get(id);
+            String prey = rules.getProperty(predator.getName() + ".prey", "");
+            for(String name : prey.split(",")) {
+                if(!name.trim().isEmpty()) {
+                    Species eaten = registry.find(name.trim());
+                    if(eaten == null) {
+                        throw new IOException(file + ": " + predator.getName()
+                                              + " eats unknown species " + name.trim());
+                    }
+                    predator.addPrey(eaten.getId());
+                }
+            }
+        }
+        return registry;
+    }
+
+    private static String required(Properties rules, String key) throws IOException
+    {
+        String value = rules.getProperty(key);
+        if(value == null) {
+            throw new IOException("Missing rule: " + key);
+        }
+        return value.trim();
+    }
+
+    /**
+     * @return The palette colour for the species with the given id.
+     */
+    private static int nextColor(int id)
+    {
+        return PALETTE[id % PALETTE.length];
+    }
+
+    /**
+     * Add a species whose animals are instances of the given class, which
+     * decides how they behave. It takes the next colour of the palette.
+     * @param animalClass The class of its animals.
+     * @param name Its name, as shown in views and output.
+     * @return The new species.
+     */
+    public Species register(Class<? extends Animal> animalClass, String name)
+    {
+        return register(animalClass, name, nextColor(species.size()), 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Add a species. Register every species before the simulation starts.
+     * @param animalClass The class of its animals.
+     * @param name Its name, as shown in views and output.
+     * @param rgb Its colour in views.
+     * @param breedingAge The age at which an animal can start to breed.
+     * @param maxAge The age at which an animal dies.
+     * @param breedingProbability The chance of breeding in a step.
+     * @param maxLitterSize The most young born at once.
+     * @param foodValue The steps a predator can go on after eating one.
+     * @return The new species.
+     */
+    public Species register(Class<? extends Animal> animalClass, String name, int rgb,
+                            int breedingAge, int maxAge, double breedingProbability,
+                            int maxLitterSize, int foodValue)
+    {
+        if(frozen) {
+            throw new IllegalStateException("Cannot add " + name + ": the species were fixed"
+                                            + " when the simulation was set up");
+        }
+        if(species.size() == MAX_SPECIES) {
+            throw new IllegalStateException("At most " + MAX_SPECIES + " species");
+        }
+        Species added = new Species(species.size(), name, rgb, breedingAge, maxAge,
+                                    breedingProbability, maxLitterSize, foodValue);
+        species.add(added);
+        if(animalClass != null) {
+            byClass.put(animalClass, added);
+            lookup = newLookup();
+        }
+        return added;
+    }
+
+    /**
+     * Add the class of the given animal as a species, named after the
+     * class, unless it (or a superclass) is registered already.
+     * @return The animal's species.
+     */
+    public Species registerClassOf(Animal animal)
+    {
+        Species known = of(animal);
+        if(known != null) {
+            return known;
+        }
+        return register(animal.getClass(), animal.getClass().getSimpleName());
+    }
+
+    /**
+     * @return The species of the given animal, or null if it is not registered.
+     */
+    public Species of(Animal animal)
+    {
+        return lookup.get(animal.getClass());
+    }
+
+    private ClassValue<Species> newLookup()
+    {
+        return new ClassValue<Species>() {
+            protected Species computeValue(Class<?> type)
+            {
+                for(Class<?> c = type; c != null; c = c.getSuperclass()) {
+                    Species found = byClass.get(c);
+                    if(found != null) {
+                        return found;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @return The species with the given id.
+     */
+    public Species get(int id)
+    {
+        return species.get(id);
+    }
+
+    /**
+     * @return The species with the given name, or null if there is none.
+     */
+    public Species find(String name)
+    {
+        for(Species candidate : species) {
+            if(candidate.getName().equals(name)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The species whose grid code is given, or null for an empty cell.
+     */
+    public Species forCode(byte code)
+    {
+        return code == SpeciesGrid.EMPTY ? null : species.get(code - 1);
+    }
+
+    /**
+     * @return The number of species.
+     */
+    public int size()
+    {
+        return species.size();
+    }
+
+    /**
+     * Fix the species, so that anything sized by them stays in step with
+     * the registry. Freezing twice does nothing.
+     */
+    public void freeze()
+    {
+        frozen = true;
+    }
+
+    /**
+     * @return true if no more species can be added.
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+}
@@ -0,0 +1,125 @@
+package sim;
+
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measure the time from JVM start to the end of the first simulation step.
+ *
+ * Startup is only meaningful in a fresh JVM, so with no arguments this
+ * starts a new JVM several times for each way of starting a simulation
+ * and prints the median time and number of classes loaded:
+ *
+ *   headless - new Simulator(false), never touches Swing
+ *   lazy     - engine built off the event thread, views added afterwards
+ *   eager    - new Simulator() and its first step, which builds the
+ *              views, all on the event thread
+ *
+ * The last two need a display and are skipped without one.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class StartupBenchmark
+{
+    private static final int REPEATS = 5;
+    private static final String[] MODES = { "headless", "lazy", "eager" };
+
+    /**
+     * Main method. With a mode argument, time that mode in this JVM.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if(args.length > 0) {
+            timeMode(args[0]);
+            return;
+        }
+        for(String mode : MODES) {
+            if(!mode.equals("headless") && GraphicsEnvironment.isHeadless()) {
+                System.out.println(mode + ": skipped, no display");
+                continue;
+            }
+            long[] millis = new long[REPEATS];
+            long[] classes = new long[REPEATS];
+            for(int i = 0; i < REPEATS; i++) {
+                String[] result = runChild(mode).trim().split(" ");
+                millis[i] = Long.parseLong(result[0]);
+                classes[i] = Long.parseLong(result[1]);
+            }
+            Arrays.sort(millis);
+            Arrays.sort(classes);
+            System.out.println(mode + ": first step after " + millis[REPEATS / 2]
+                               + " ms, " + classes[REPEATS / 2] + " classes loaded");
+        }
+    }
+
+    /**
+     * Start a simulation the given way, run one step, and print the JVM
+     * uptime and the number of classes loaded.
+     */
+    private static void timeMode(String mode) throws Exception
+    {
+        Simulator[] sim = new Simulator[1];
+        switch(mode) {
+            case "headless":
+                sim[0] = new Simulator(false);
+                sim[0].simulateOneStep();
+                break;
+            case "lazy":
+                sim[0] = new Simulator(false);
+                SwingUtilities.invokeAndWait(() -> {
+                    sim[0].showViews();
+                    sim[0].simulateOneStep();
+                });
+                break;
+            case "eager":
+                SwingUtilities.invokeAndWait(() -> {
+                    sim[0] = new Simulator();
+                    sim[0].simulateOneStep();
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        int classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        System.out.println(uptime + " " + classes);
+        sim[0].endSimulation();
+        System.exit(0);
+    }
+
+    /**
+     * Run one mode in a new JVM and return what it printed.
+     */
+    private static String runChild(String mode) throws IOException, InterruptedException
+    {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+                    + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StartupBenchmark.class.getName());
+        command.add(mode);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String last = "";
+        try(BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                last = line;
+            }
+        }
+        if(process.waitFor() != 0) {
+            throw new IllegalStateException(mode + " failed: " + last);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,303 @@
+package sim;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Measures the time taken and the bytes allocated by each phase of a
+ * simulation step, and by the animals of each species as they act.
+ *
+ * Each phase is bracketed by begin() and end() on the simulating thread;
+ * the bytes are read from the thread's allocation counter, so anything
+ * other threads allocate is not counted. Totals are kept for the report,
+ * and while a Flight Recorder recording is running each phase, and each
+ * species' share of every step, is also committed as a JFR event
+ * (sim.Phase and sim.SpeciesStep) so they can be lined up with GC events
+ * in JDK Mission Control.
+ *
+ * Profiling costs a counter read per animal, so only attach a profiler
+ * while measuring.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class StepProfiler
+{
+    // The phases measured.
+    public static final int ACT = 0;
+    public static final int SORT = 1;
+    public static final int COUNT = 2;
+    public static final int EVENTS = 3;
+    public static final int VIEWS = 4;
+    public static final int POPULATE = 5;
+    private static final String[] PHASE_NAMES = {
+        "act", "sort", "count", "events", "views", "populate"
+    };
+
+    private static final EventType PHASE_TYPE = EventType.getEventType(PhaseEvent.class);
+    private static final EventType SPECIES_TYPE = EventType.getEventType(SpeciesStepEvent.class);
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final SpeciesRegistry species;
+
+    // Totals per phase.
+    private long[] phaseCalls = new long[PHASE_NAMES.length];
+    private long[] phaseNanos = new long[PHASE_NAMES.length];
+    private long[] phaseBytes = new long[PHASE_NAMES.length];
+    // Totals per species over all steps, and for the step under way.
+    private long[] actCalls, actNanos, actBytes;
+    private long[] stepCalls, stepNanos, stepBytes;
+    private long steps;
+
+    // The phase and animal being measured, and where they started.
+    private int phase = -1;
+    private long phaseStartNanos, phaseStartBytes;
+    private PhaseEvent phaseEvent;
+    private long animalStartNanos, animalStartBytes;
+
+    // Where endSimulation writes the report, or null.
+    private String reportFile = null;
+
+    /**
+     * Create a profiler for a simulation of the given species.
+     */
+    public StepProfiler(SpeciesRegistry species)
+    {
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("This JVM cannot count allocated bytes.");
+        }
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        this.species = species;
+        int n = species.size();
+        actCalls = new long[n];
+        actNanos = new long[n];
+        actBytes = new long[n];
+        stepCalls = new long[n];
+        stepNanos = new long[n];
+        stepBytes = new long[n];
+    }
+
+    /**
+     * Set the file the report is written to when the simulation ends,
+     * or null not to write one.
+     */
+    public void setReportFile(String fname)
+    {
+        reportFile = fname;
+    }
+
+    /**
+     * Start measuring a phase. Phases do not nest.
+     */
+    public void begin(int phase)
+    {
+        this.phase = phase;
+        phaseEvent = PHASE_TYPE.isEnabled() ? new PhaseEvent() : null;
+        if(phaseEvent != null) {
+            phaseEvent.begin();
+        }
+        phaseStartBytes = threads.getCurrentThreadAllocatedBytes();
+        phaseStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Finish measuring the phase begun last.
+     * @param step The step it belonged to.
+     */
+    public void end(int step)
+    {
+        long nanos = System.nanoTime() - phaseStartNanos;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - phaseStartBytes;
+        phaseCalls[phase]++;
+        phaseNanos[phase] += nanos;
+        phaseBytes[phase] += bytes;
+        if(phaseEvent != null) {
+            phaseEvent.end();
+            if(phaseEvent.shouldCommit()) {
+                phaseEvent.phase = PHASE_NAMES[phase];
+                phaseEvent.step = step;
+                phaseEvent.allocated = bytes;
+                phaseEvent.commit();
+            }
+            phaseEvent = null;
+        }
+        phase = -1;
+    }
+
+    /**
+     * Start measuring one animal's turn.
+     */
+    public void beginAnimal()
+    {
+        animalStartBytes = threads.getCurrentThreadAllocatedBytes();
+        animalStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Finish measuring the turn begun last.
+     * @param speciesId The animal's species.
+     */
+    public void endAnimal(int speciesId)
+    {
+        long nanos = System.nanoTime() - animalStartNanos;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - animalStartBytes;
+        stepCalls[speciesId]++;
+        stepNanos[speciesId] += nanos;
+        stepBytes[speciesId] += bytes;
+    }
+
+    /**
+     * Finish a step: add each species' share to the totals, and commit it
+     * to the recording if one is running.
+     */
+    public void endStep(int step)
+    {
+        steps++;
+        boolean recording = SPECIES_TYPE.isEnabled();
+        for(int id = 0; id < stepCalls.length; id++) {
+            if(recording && stepCalls[id] > 0) {
+                SpeciesStepEvent event = new SpeciesStepEvent();
+                event.step = step;
+                event.species = species.get(id).getName();
+                event.animals = stepCalls[id];
+                event.actNanos = stepNanos[id];
+                event.allocated = stepBytes[id];
+                event.commit();
+            }
+            actCalls[id] += stepCalls[id];
+            actNanos[id] += stepNanos[id];
+            actBytes[id] += stepBytes[id];
+            stepCalls[id] = 0;
+            stepNanos[id] = 0;
+            stepBytes[id] = 0;
+        }
+    }
+
+    /**
+     * Forget everything measured so far.
+     */
+    public void clear()
+    {
+        Arrays.fill(phaseCalls, 0);
+        Arrays.fill(phaseNanos, 0);
+        Arrays.fill(phaseBytes, 0);
+        Arrays.fill(actCalls, 0);
+        Arrays.fill(actNanos, 0);
+        Arrays.fill(actBytes, 0);
+        steps = 0;
+    }
+
+    /**
+     * @return The bytes allocated per step by the phases of a step, on average.
+     */
+    public long getBytesPerStep()
+    {
+        if(steps == 0) {
+            return 0;
+        }
+        long total = 0;
+        for(int p : new int[] { ACT, SORT, COUNT, EVENTS, VIEWS }) {
+            total += phaseBytes[p];
+        }
+        return total / steps;
+    }
+
+    /**
+     * @return A table of the totals: per phase, then per species.
+     */
+    public String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Steps profiled: %d, %d bytes allocated per step%n%n",
+                                    steps, getBytesPerStep()));
+        report.append(String.format("%-10s %10s %12s %12s %14s %12s%n",
+                                    "Phase", "Calls", "Total ms", "Mean us", "Total bytes", "Bytes/call"));
+        for(int p = 0; p < PHASE_NAMES.length; p++) {
+            long calls = Math.max(1, phaseCalls[p]);
+            report.append(String.format("%-10s %10d %12.1f %12.1f %14d %12d%n",
+                                        PHASE_NAMES[p], phaseCalls[p], phaseNanos[p] / 1e6,
+                                        phaseNanos[p] / 1e3 / calls, phaseBytes[p],
+                                        phaseBytes[p] / calls));
+        }
+        report.append(String.format("%n%-10s %10s %12s %12s %14s %12s%n",
+                                    "Species", "Acts", "Total ms", "Mean ns", "Total bytes", "Bytes/act"));
+        for(int id = 0; id < actCalls.length; id++) {
+            long calls = Math.max(1, actCalls[id]);
+            report.append(String.format("%-10s %10d %12.1f %12.1f %14d %12d%n",
+                                        species.get(id).getName(), actCalls[id], actNanos[id] / 1e6,
+                                        (double) actNanos[id] / calls, actBytes[id],
+                                        actBytes[id] / calls));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Write the report to the report file, if one is set.
+     * @return false if the file could not be written.
+     */
+    public boolean writeReport()
+    {
+        if(reportFile == null) {
+            return true;
+        }
+        try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(reportFile))) {
+            writer.write(getReport());
+            return true;
+        }
+        catch(IOException e) {
+            System.out.println("Error writing to file: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * One phase of one step.
+     */
+    @Name("sim.Phase")
+    @Label("Simulation Phase")
+    @Category("Simulation")
+    static class PhaseEvent extends Event
+    {
+        @Label("Phase")
+        String phase;
+        @Label("Step")
+        int step;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    /**
+     * What the animals of one species did in one step.
+     */
+    @Name("sim.SpeciesStep")
+    @Label("Species Step")
+    @Category("Simulation")
+    static class SpeciesStepEvent extends Event
+    {
+        @Label("Step")
+        int step;
+        @Label("Species")
+        String species;
+        @Label("Animals")
+        long animals;
+        @Label("Act Time")
+        @Timespan
+        long actNanos;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
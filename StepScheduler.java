@@ -0,0 +1,245 @@
+package sim;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deliver simulation steps at a fixed rate.
+ *
+ * A single scheduler thread is created by the first call to start() and
+ * lives until shutdown(); in between it is started and stopped as the
+ * simulation runs and pauses. Deadlines are worked out
+ * from the time the current rate was set, not from the last tick, so
+ * lateness never accumulates: if the listener falls behind, the steps
+ * that are due are handed over together in one batch.
+ *
+ * The listener says how many steps to run. Whoever runs them reports
+ * back through completed(), which gives the achieved rate and stops the
+ * scheduler from running too far ahead of a slow consumer.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class StepScheduler
+{
+    // The most steps handed over in one go.
+    private static final int MAX_BATCH = 1000;
+    // The most steps allowed to be handed over but not yet completed.
+    private static final int MAX_OUTSTANDING = 2 * MAX_BATCH;
+    // How long to wait for a slow consumer before checking again.
+    private static final long BACKOFF_NANOS = 200_000L;
+    // How often the achieved rate is worked out.
+    private static final long RATE_PERIOD_NANOS = 500_000_000L;
+
+    /**
+     * Receives steps that are due. Called on the scheduler thread.
+     */
+    public interface StepListener
+    {
+        void steps(int count);
+    }
+
+    private StepListener listener;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean shutdown;
+    // Steps per second, or 0 to run as fast as the consumer can go.
+    private volatile double stepsPerSecond;
+    // Bumped on every rate change or restart, so the thread starts a new epoch.
+    private volatile int epoch;
+
+    private AtomicLong issued = new AtomicLong();
+    private AtomicLong completed = new AtomicLong();
+    private volatile double achievedRate;
+    private long rateStart;
+    private long rateCompleted;
+
+    /**
+     * Create a stopped scheduler. No thread is started until start().
+     * @param stepsPerSecond The target rate, or 0 for unlimited.
+     * @param listener Receives the steps that are due.
+     */
+    public StepScheduler(double stepsPerSecond, StepListener listener)
+    {
+        this.stepsPerSecond = stepsPerSecond;
+        this.listener = listener;
+    }
+
+    /**
+     * Start (or resume) delivering steps.
+     */
+    public synchronized void start()
+    {
+        if(shutdown) {
+            throw new IllegalStateException("The scheduler has been shut down");
+        }
+        running = true;
+        epoch++;
+        if(thread == null) {
+            thread = new Thread(this::loop, "Step Scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+        wake();
+    }
+
+    /**
+     * Stop delivering steps. Steps already handed over may still be run.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+        epoch++;
+        achievedRate = 0;
+        wake();
+    }
+
+    /**
+     * Stop for good and let the scheduler thread end.
+     */
+    public synchronized void shutdown()
+    {
+        running = false;
+        shutdown = true;
+        notifyAll();
+        wake();
+    }
+
+    /**
+     * @return true if steps are being delivered.
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Change the target rate. Takes effect immediately, even while running.
+     * @param stepsPerSecond The target rate, or 0 for unlimited.
+     */
+    public synchronized void setStepsPerSecond(double stepsPerSecond)
+    {
+        this.stepsPerSecond = stepsPerSecond;
+        epoch++;
+        wake();
+    }
+
+    /**
+     * @return The target rate, or 0 for unlimited.
+     */
+    public double getStepsPerSecond()
+    {
+        return stepsPerSecond;
+    }
+
+    /**
+     * Report that steps handed to the listener have been run.
+     * @param count The number of steps run.
+     */
+    public void completed(int count)
+    {
+        completed.addAndGet(count);
+    }
+
+    /**
+     * @return The number of steps per second actually completed recently.
+     */
+    public double getAchievedRate()
+    {
+        return achievedRate;
+    }
+
+    /**
+     * The scheduler thread: wait while stopped, deliver steps while running.
+     */
+    private void loop()
+    {
+        while(waitUntilRunning()) {
+            int myEpoch = epoch;
+            double rate = stepsPerSecond;
+            long start = System.nanoTime();
+            long delivered = 0;
+            rateStart = start;
+            rateCompleted = completed.get();
+            while(running && epoch == myEpoch) {
+                long now = System.nanoTime();
+                measureRate(now);
+                if(issued.get() - completed.get() >= MAX_OUTSTANDING) {
+                    // The consumer is behind; let it catch up.
+                    LockSupport.parkNanos(BACKOFF_NANOS);
+                    continue;
+                }
+                if(rate <= 0) {
+                    deliver(MAX_BATCH);
+                    continue;
+                }
+                // Every step due since the start of this epoch, less those given.
+                long due = (long) ((now - start) * rate / 1e9) + 1 - delivered;
+                if(due > MAX_BATCH) {
+                    // Too far behind to catch up: skip ahead rather than burst.
+                    delivered += due - MAX_BATCH;
+                    due = MAX_BATCH;
+                }
+                if(due > 0) {
+                    deliver((int) due);
+                    delivered += due;
+                }
+                long next = start + (long) (delivered * 1e9 / rate);
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Wake the scheduler thread, if there is one, from a timed wait so it
+     * sees a change at once rather than at its next deadline.
+     */
+    private void wake()
+    {
+        if(thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Hand steps to the listener.
+     */
+    private void deliver(int count)
+    {
+        issued.addAndGet(count);
+        listener.steps(count);
+    }
+
+    /**
+     * Work out the achieved rate once enough time has passed.
+     */
+    private void measureRate(long now)
+    {
+        if(now - rateStart >= RATE_PERIOD_NANOS) {
+            long done = completed.get();
+            achievedRate = (done - rateCompleted) * 1e9 / (now - rateStart);
+            rateStart = now;
+            rateCompleted = done;
+        }
+    }
+
+    /**
+     * Block while stopped.
+     * @return false once the scheduler has been shut down.
+     */
+    private synchronized boolean waitUntilRunning()
+    {
+        while(!running && !shutdown) {
+            try {
+                wait();
+            }
+            catch(InterruptedException e) {
+                return false;
+            }
+        }
+        // Anything handed over before a stop no longer holds us back.
+        issued.set(completed.get());
+        return !shutdown;
+    }
+}
@@ -0,0 +1,84 @@
+package sim;
+
+/**
+ * The state of a simulation at the end of one step: the step number,
+ * the population of each species and how long the step took.
+ *
+ * A snapshot never changes once made. The simulator publishes a new one
+ * through a single volatile field at the end of every step, so any thread
+ * can read a step number and counts that belong together without locks
+ * and without holding up the simulation.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public final class StepSnapshot implements PopulationCounts
+{
+    private final int step;
+    // The population of each species, indexed by species id.
+    private final int[] populations;
+    private final SpeciesRegistry species;
+    // When the snapshot was made (System.nanoTime), and how long the step took.
+    private final long timeNanos;
+    private final long stepNanos;
+
+    /**
+     * Make a snapshot.
+     * @param step The step just finished.
+     * @param populations The population of each species; copied.
+     * @param species The species, for their names.
+     * @param stepNanos How long the step took, in nanoseconds.
+     */
+    public StepSnapshot(int step, int[] populations, SpeciesRegistry species, long stepNanos)
+    {
+        this.step = step;
+        this.populations = populations.clone();
+        this.species = species;
+        this.stepNanos = stepNanos;
+        timeNanos = System.nanoTime();
+    }
+
+    public int getStep()
+    {
+        return step;
+    }
+
+    public int getPopulation(int id)
+    {
+        return populations[id];
+    }
+
+    public SpeciesRegistry getSpeciesRegistry()
+    {
+        return species;
+    }
+
+    /**
+     * @return The value of System.nanoTime when the snapshot was made.
+     */
+    public long getTimeNanos()
+    {
+        return timeNanos;
+    }
+
+    /**
+     * @return How long the step took, in nanoseconds; 0 for a reset.
+     */
+    public long getStepNanos()
+    {
+        return stepNanos;
+    }
+
+    /**
+     * @return The population of each species, as "Name: count " for each.
+     */
+    public String getDetails()
+    {
+        StringBuilder details = new StringBuilder();
+        for(int id = 0; id < populations.length; id++) {
+            details.append(species.get(id).getName()).append(": ")
+                   .append(populations[id]).append(' ');
+        }
+        return details.toString();
+    }
+}
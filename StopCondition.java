@@ -0,0 +1,287 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A test for stopping a run early, checked after every step of
+ * Simulator.simulate(int, StopCondition) or RuleEngine.simulate. Conditions
+ * only look at the population counters the engines keep anyway, and the ones that
+ * need history keep running totals, so checking one costs a few
+ * arithmetic operations per step.
+ *
+ * Conditions with history are stateful: use a fresh one for each run.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public interface StopCondition
+{
+    /**
+     * @param sim The simulator or rule engine, just after a step.
+     * @return true if the run has answered its question and should stop.
+     */
+    boolean shouldStop(PopulationCounts sim);
+
+    /**
+     * Stop as soon as any species has died out.
+     */
+    static StopCondition extinction()
+    {
+        return sim -> {
+            for(int id = 0; id < sim.getSpeciesRegistry().size(); id++) {
+                if(sim.getPopulation(id) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Stop when every population has stayed steady for a number of steps:
+     * the standard deviation over the window is within the given fraction
+     * of the mean.
+     * @param window The number of steps to look back over.
+     * @param tolerance The allowed deviation, as a fraction of the mean.
+     */
+    static StopCondition steadyState(int window, double tolerance)
+    {
+        return new SteadyState(window, tolerance);
+    }
+
+    /**
+     * Stop once the prey population (species 0, rabbits in the standard
+     * registry) has settled into a cycle: the last few gaps between its
+     * peaks agree to within the given fraction.
+     * @param cycles The number of matching gaps needed.
+     * @param tolerance The allowed difference between gaps, as a fraction.
+     */
+    static StopCondition oscillation(int cycles, double tolerance)
+    {
+        return new Oscillation(cycles, tolerance);
+    }
+
+    /**
+     * Stop when any of the given conditions says so.
+     */
+    static StopCondition anyOf(List<StopCondition> conditions)
+    {
+        return sim -> {
+            boolean stop = false;
+            // Every condition sees every step, so their histories stay complete.
+            for(StopCondition condition : conditions) {
+                stop |= condition.shouldStop(sim);
+            }
+            return stop;
+        };
+    }
+
+    /**
+     * Build a condition from a text description, as used on command lines.
+     * Conditions are separated by commas and stop the run when any of them
+     * is met, for example "extinct,steady:200:0.02,oscillation:3:0.1".
+     * An empty description never stops.
+     * @param spec The description.
+     * @return The condition.
+     * @throws IllegalArgumentException If the description is malformed, or
+     *         a window or number of cycles is less than one.
+     */
+    static StopCondition parse(String spec)
+    {
+        List<StopCondition> conditions = new ArrayList<>();
+        for(String part : spec.split(",")) {
+            String[] args = part.trim().split(":");
+            switch(args[0]) {
+                case "":
+                    break;
+                case "extinct":
+                    checkArguments(part, args, 1);
+                    conditions.add(extinction());
+                    break;
+                case "steady":
+                    checkArguments(part, args, 3);
+                    conditions.add(steadyState(parseInt(part, args[1]),
+                                               parseDouble(part, args[2])));
+                    break;
+                case "oscillation":
+                    checkArguments(part, args, 3);
+                    conditions.add(oscillation(parseInt(part, args[1]),
+                                               parseDouble(part, args[2])));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown stop condition: " + part
+                                                       + "; " + USAGE);
+            }
+        }
+        if(conditions.size() == 1) {
+            return conditions.get(0);
+        }
+        return anyOf(conditions);
+    }
+
+    /**
+     * The forms parse understands.
+     */
+    String USAGE = "expected a comma separated list of extinct, steady:window:tolerance"
+                   + " and oscillation:cycles:tolerance";
+
+    private static void checkArguments(String part, String[] args, int expected)
+    {
+        if(args.length != expected) {
+            throw new IllegalArgumentException("Wrong number of values in stop condition: "
+                                               + part + "; " + USAGE);
+        }
+    }
+
+    private static int parseInt(String part, String value)
+    {
+        try {
+            return Integer.parseInt(value.trim());
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Not a whole number in stop condition: "
+                                               + part + "; " + USAGE);
+        }
+    }
+
+    private static double parseDouble(String part, String value)
+    {
+        try {
+            return Double.parseDouble(value.trim());
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number in stop condition: "
+                                               + part + "; " + USAGE);
+        }
+    }
+
+    /**
+     * Steady state detection from running sums over a window of steps.
+     */
+    class SteadyState implements StopCondition
+    {
+        private int window;
+        private double tolerance;
+        // The counts in the window, a row of one per species for each step,
+        // oldest first from row next. Allocated once the species are known.
+        private int[] counts;
+        private int species;
+        private int next;
+        private int filled;
+        private long[] sums;
+        private long[] squares;
+
+        public SteadyState(int window, double tolerance)
+        {
+            if(window < 1 || !(tolerance >= 0)) {
+                throw new IllegalArgumentException("A steady state needs a window of at least"
+                                                   + " one step and a tolerance of at least 0");
+            }
+            this.window = window;
+            this.tolerance = tolerance;
+        }
+
+        public boolean shouldStop(PopulationCounts sim)
+        {
+            if(counts == null) {
+                species = sim.getSpeciesRegistry().size();
+                counts = new int[window * species];
+                sums = new long[species];
+                squares = new long[species];
+            }
+            int base = next * species;
+            boolean full = filled == window;
+            if(!full) {
+                filled++;
+            }
+            boolean steady = filled == window;
+            for(int id = 0; id < species; id++) {
+                if(full) {
+                    int old = counts[base + id];
+                    sums[id] -= old;
+                    squares[id] -= (long) old * old;
+                }
+                int count = sim.getPopulation(id);
+                counts[base + id] = count;
+                sums[id] += count;
+                squares[id] += (long) count * count;
+                steady = steady && isSteady(sums[id], squares[id]);
+            }
+            next = (next + 1) % window;
+            return steady;
+        }
+
+        private boolean isSteady(long sum, long squares)
+        {
+            double mean = (double) sum / window;
+            double variance = (double) squares / window - mean * mean;
+            return Math.sqrt(Math.max(0, variance)) <= tolerance * mean;
+        }
+    }
+
+    /**
+     * Cycle detection from the gaps between peaks in the prey population.
+     * A peak only counts once the population has fallen back by the
+     * tolerance, so step-to-step noise is not mistaken for a cycle.
+     */
+    class Oscillation implements StopCondition
+    {
+        private int cycles;
+        private double tolerance;
+        // true while climbing towards a peak, false while falling to a trough.
+        private boolean rising = true;
+        // The highest (or lowest) count seen in this phase, and when.
+        private int extreme = -1;
+        private int extremeStep;
+        private int lastPeak = -1;
+        private int lastGap;
+        private int matches;
+
+        public Oscillation(int cycles, double tolerance)
+        {
+            if(cycles < 1 || !(tolerance >= 0)) {
+                throw new IllegalArgumentException("An oscillation needs at least one cycle"
+                                                   + " and a tolerance of at least 0");
+            }
+            this.cycles = cycles;
+            this.tolerance = tolerance;
+        }
+
+        public boolean shouldStop(PopulationCounts sim)
+        {
+            int count = sim.getPopulation(0);
+            if(extreme < 0 || (rising ? count > extreme : count < extreme)) {
+                extreme = count;
+                extremeStep = sim.getStep();
+            }
+            else if(rising && count < extreme * (1 - tolerance)) {
+                peakAt(extremeStep);
+                rising = false;
+                extreme = count;
+                extremeStep = sim.getStep();
+            }
+            else if(!rising && count > extreme * (1 + tolerance)) {
+                rising = true;
+                extreme = count;
+                extremeStep = sim.getStep();
+            }
+            return matches >= cycles;
+        }
+
+        private void peakAt(int step)
+        {
+            if(lastPeak >= 0) {
+                int gap = step - lastPeak;
+                if(lastGap > 0 && Math.abs(gap - lastGap) <= tolerance * lastGap) {
+                    matches++;
+                }
+                else {
+                    matches = 0;
+                }
+                lastGap = gap;
+            }
+            lastPeak = step;
+        }
+    }
+}
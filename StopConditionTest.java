@@ -0,0 +1,155 @@
+package sim;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * The test class StopConditionTest.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class StopConditionTest
+{
+    @Test
+    public void extinctStopsWhenASpeciesIsGone()
+    {
+        StopCondition stop = StopCondition.parse("extinct");
+        assertFalse(stop.shouldStop(new Counts(1, 10, 3)));
+        assertTrue(stop.shouldStop(new Counts(2, 10, 0)));
+    }
+
+    @Test
+    public void emptyNeverStops()
+    {
+        StopCondition stop = StopCondition.parse("");
+        assertFalse(stop.shouldStop(new Counts(1, 0, 0)));
+    }
+
+    @Test
+    public void steadyStopsOnceTheWindowIsFlat()
+    {
+        StopCondition stop = StopCondition.parse("steady:3:0.01");
+        assertFalse(stop.shouldStop(new Counts(1, 50, 20)));
+        assertFalse(stop.shouldStop(new Counts(2, 100, 20)));
+        assertFalse(stop.shouldStop(new Counts(3, 100, 20)));
+        assertTrue(stop.shouldStop(new Counts(4, 100, 20)));
+    }
+
+    @Test
+    public void steadyIgnoresChangesOutsideTheWindow()
+    {
+        StopCondition stop = StopCondition.steadyState(2, 0.0);
+        assertFalse(stop.shouldStop(new Counts(1, 1, 1)));
+        assertFalse(stop.shouldStop(new Counts(2, 9, 1)));
+        assertTrue(stop.shouldStop(new Counts(3, 9, 1)));
+    }
+
+    @Test
+    public void oscillationStopsAfterMatchingCycles()
+    {
+        StopCondition stop = StopCondition.parse("oscillation:2:0.1");
+        boolean stopped = false;
+        int step = 0;
+        // A saw-tooth with a period of 10 steps.
+        while(!stopped && step < 200) {
+            step++;
+            stopped = stop.shouldStop(new Counts(step, 100 + 10 * (step % 10), 5));
+        }
+        assertTrue(stopped);
+        assertTrue(step < 60);
+    }
+
+    @Test
+    public void anyOfStopsWhenOneDoes()
+    {
+        StopCondition stop = StopCondition.parse("steady:100:0.01, extinct");
+        assertFalse(stop.shouldStop(new Counts(1, 10, 10)));
+        assertTrue(stop.shouldStop(new Counts(2, 10, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownConditionIsRejected()
+    {
+        StopCondition.parse("forever");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValuesAreRejected()
+    {
+        StopCondition.parse("steady:200");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingEverythingIsRejected()
+    {
+        StopCondition.parse("oscillation");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void extraValuesAreRejected()
+    {
+        StopCondition.parse("extinct:5");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroWindowIsRejected()
+    {
+        StopCondition.parse("steady:0:0.1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCyclesAreRejected()
+    {
+        StopCondition.parse("oscillation:0:0.1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badNumbersAreRejected()
+    {
+        StopCondition.parse("steady:many:0.1");
+    }
+
+    @Test
+    public void rejectionsExplainTheForm()
+    {
+        try {
+            StopCondition.parse("steady:10");
+            fail("accepted a condition without a tolerance");
+        }
+        catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("steady:window:tolerance"));
+        }
+    }
+
+    /**
+     * Fixed counts of rabbits and foxes at one step.
+     */
+    private static class Counts implements PopulationCounts
+    {
+        private static final SpeciesRegistry SPECIES = SpeciesRegistry.standard();
+        private int step;
+        private int[] populations;
+
+        public Counts(int step, int rabbits, int foxes)
+        {
+            this.step = step;
+            populations = new int[] { rabbits, foxes };
+        }
+
+        public int getStep()
+        {
+            return step;
+        }
+
+        public int getPopulation(int id)
+        {
+            return populations[id];
+        }
+
+        public SpeciesRegistry getSpeciesRegistry()
+        {
+            return SPECIES;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package sim;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import javax.swing.JComponent;
+
+/**
+ * A view of a window onto a species grid, for fields too big to show
+ * whole. Only the cells inside the window are drawn.
+ *
+ * Zoomed in, each cell is a square of pixels. Zoomed out, each pixel
+ * stands for a square block of cells and is coloured by what is in it:
+ * the species colours mixed in proportion to their counts, and faded
+ * towards white by the empty cells. Up to a few cells a pixel, the cells
+ * are counted; beyond that, blocks line up with the grid's tiles and are
+ * coloured from the per-tile counts the grid keeps up to date, so the
+ * cost of a pixel grows with the tiles it covers, not the cells.
+ *
+ * The grid shown may be rewritten by the simulation while the view is
+ * painted. So the view paints from its own copy of the visible part of
+ * the grid, codes or tile counts, taken when it paints with the grid's
+ * tryCopyRegion or tryCopyTiles and taken again if the grid changed
+ * during the copy. Nothing is done per generation beyond noting the grid.
+ *
+ * Drag with the mouse to pan; turn the wheel to zoom about the pointer.
+ *
+ * @author agent
+ * @version 2026.10.19
+ */
+public class ViewportView extends JComponent
+{
+    // Zoom levels: pixels per cell is 2 to the power of the level.
+    private static final int MIN_ZOOM = -6;
+    private static final int MAX_ZOOM = 4;
+    // The lowest zoom level at which cells are counted rather than tiles.
+    private static final int CELL_ZOOM = 1 - SpeciesGrid.TILE_SHIFT;
+    private static final int EMPTY_RGB = Color.white.getRGB();
+    private static final int UNKNOWN_RGB = Color.gray.getRGB();
+
+    private volatile SpeciesGrid grid;
+    // The colour of each grid code, EMPTY included.
+    private int[] colors;
+    private int zoom = 0;
+    // The cell at the top left of the window.
+    private int originRow = 0;
+    private int originCol = 0;
+    // Where the mouse was pressed, for dragging.
+    private int dragX, dragY;
+
+    // The copy painted from: the codes of the visible cells, or each
+    // species' counts in the visible tiles, row after row.
+    private byte[] region = new byte[0];
+    private int[][] tiles;
+
+    private BufferedImage image;
+    private int[] pixels;
+
+    /**
+     * Create a view.
+     * @param registry The species, for their colours.
+     * @param width The preferred width in pixels.
+     * @param height The preferred height in pixels.
+     */
+    public ViewportView(SpeciesRegistry registry, int width, int height)
+    {
+        colors = new int[registry.size() + 1];
+        tiles = new int[registry.size()][0];
+        colors[SpeciesGrid.EMPTY] = EMPTY_RGB;
+        for(int id = 0; id < registry.size(); id++) {
+            colors[registry.get(id).getCode()] = registry.get(id).getRGB();
+        }
+        setPreferredSize(new Dimension(width, height));
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e)
+            {
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e)
+            {
+                pan(dragX - e.getX(), dragY - e.getY());
+                dragX = e.getX();
+                dragY = e.getY();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e)
+            {
+                zoomAbout(zoom - e.getWheelRotation(), e.getX(), e.getY());
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * Set the colour of a species.
+     */
+    public void setColor(int speciesId, Color color)
+    {
+        colors[speciesId + 1] = color.getRGB();
+        repaint();
+    }
+
+    /**
+     * Show a new generation of the grid. The grid is only read when the
+     * view is painted, on the event thread, and may be rewritten meanwhile
+     * on any thread that brackets its writes with beginWrite and endWrite.
+     */
+    public void showGrid(SpeciesGrid grid)
+    {
+        this.grid = grid;
+        repaint();
+    }
+
+    /**
+     * Move the window by a number of pixels.
+     */
+    public void pan(int dx, int dy)
+    {
+        originCol += toCells(dx);
+        originRow += toCells(dy);
+        clampOrigin();
+        repaint();
+    }
+
+    /**
+     * Change the zoom level, keeping the cell under a point where it is.
+     * @param level The new level; 0 is one pixel per cell, each step up
+     *              doubles the size of a cell and each step down halves it.
+     */
+    public void zoomAbout(int level, int x, int y)
+    {
+        level = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, level));
+        int row = originRow + toCells(y);
+        int col = originCol + toCells(x);
+        zoom = level;
+        originRow = row - toCells(y);
+        originCol = col - toCells(x);
+        clampOrigin();
+        repaint();
+    }
+
+    public int getZoom()
+    {
+        return zoom;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        SpeciesGrid grid = this.grid;
+        int width = getWidth();
+        int height = getHeight();
+        if(grid == null || width == 0 || height == 0) {
+            return;
+        }
+        if(image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        clampOrigin();
+        int rows = Math.min(grid.getDepth() - originRow, cellsUnder(height));
+        int cols = Math.min(grid.getWidth() - originCol, cellsUnder(width));
+        if(zoom >= CELL_ZOOM) {
+            copyRegion(grid, rows, cols);
+            if(zoom >= 0) {
+                drawCells(width, height, rows, cols);
+            }
+            else {
+                drawBlocks(width, height, rows, cols);
+            }
+        }
+        else {
+            // The origin is on a tile boundary, so these are the tiles
+            // under the visible cells.
+            int tileRows = (rows + SpeciesGrid.TILE - 1) >> SpeciesGrid.TILE_SHIFT;
+            int tileCols = (cols + SpeciesGrid.TILE - 1) >> SpeciesGrid.TILE_SHIFT;
+            copyTiles(grid, tileRows, tileCols);
+            drawTiles(width, height, rows, cols, tileRows, tileCols);
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Copy the codes of the visible cells, trying again until the copy
+     * is of a single generation.
+     */
+    private void copyRegion(SpeciesGrid grid, int rows, int cols)
+    {
+        if(region.length < rows * cols) {
+            region = new byte[rows * cols];
+        }
+        while(!grid.tryCopyRegion(originRow, originCol, rows, cols, region)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copy the counts in the given number of tiles from the origin,
+     * trying again until the copy is of a single generation.
+     */
+    private void copyTiles(SpeciesGrid grid, int tileRows, int tileCols)
+    {
+        if(tiles.length > 0 && tiles[0].length < tileRows * tileCols) {
+            for(int id = 0; id < tiles.length; id++) {
+                tiles[id] = new int[tileRows * tileCols];
+            }
+        }
+        while(!grid.tryCopyTiles(originRow >> SpeciesGrid.TILE_SHIFT,
+                                 originCol >> SpeciesGrid.TILE_SHIFT,
+                                 tileRows, tileCols, tiles)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Zoomed in: colour each visible cell's square.
+     */
+    private void drawCells(int width, int height, int rows, int cols)
+    {
+        int shift = zoom;
+        for(int y = 0; y < height; y++) {
+            int row = y >> shift;
+            int base = y * width;
+            if(row >= rows) {
+                Arrays.fill(pixels, base, base + width, UNKNOWN_RGB);
+                continue;
+            }
+            for(int x = 0; x < width; x++) {
+                int col = x >> shift;
+                pixels[base + x] = col < cols ? colorOf(region[row * cols + col]) : UNKNOWN_RGB;
+            }
+        }
+    }
+
+    /**
+     * Zoomed out a little: colour each pixel by the mean colour of the
+     * few cells in its block.
+     */
+    private void drawBlocks(int width, int height, int rows, int cols)
+    {
+        int block = 1 << -zoom;
+        for(int y = 0; y < height; y++) {
+            int top = y * block;
+            int bottom = Math.min(rows, top + block);
+            int base = y * width;
+            for(int x = 0; x < width; x++) {
+                int left = x * block;
+                int right = Math.min(cols, left + block);
+                if(top >= bottom || left >= right) {
+                    pixels[base + x] = UNKNOWN_RGB;
+                    continue;
+                }
+                int red = 0, green = 0, blue = 0;
+                for(int row = top; row < bottom; row++) {
+                    for(int index = row * cols + left; index < row * cols + right; index++) {
+                        int rgb = colorOf(region[index]);
+                        red += (rgb >> 16) & 0xff;
+                        green += (rgb >> 8) & 0xff;
+                        blue += rgb & 0xff;
+                    }
+                }
+                int area = (bottom - top) * (right - left);
+                pixels[base + x] = (red / area) << 16 | (green / area) << 8 | (blue / area);
+            }
+        }
+    }
+
+    /**
+     * Zoomed out further: colour each pixel by the species counts in the
+     * tiles its block covers.
+     */
+    private void drawTiles(int width, int height, int rows, int cols, int tileRows, int tileCols)
+    {
+        int block = 1 << -zoom;
+        // The tiles down and across a block.
+        int span = block >> SpeciesGrid.TILE_SHIFT;
+        for(int y = 0; y < height; y++) {
+            int top = y * block;
+            int bottom = Math.min(rows, top + block);
+            int base = y * width;
+            for(int x = 0; x < width; x++) {
+                int left = x * block;
+                int right = Math.min(cols, left + block);
+                if(top >= bottom || left >= right) {
+                    pixels[base + x] = UNKNOWN_RGB;
+                    continue;
+                }
+                int area = (bottom - top) * (right - left);
+                int empty = area;
+                int red = 0, green = 0, blue = 0;
+                int lastRow = Math.min(tileRows, (y + 1) * span);
+                int lastCol = Math.min(tileCols, (x + 1) * span);
+                for(int id = 0; id < tiles.length; id++) {
+                    int[] counts = tiles[id];
+                    int count = 0;
+                    for(int row = y * span; row < lastRow; row++) {
+                        for(int col = x * span; col < lastCol; col++) {
+                            count += counts[row * tileCols + col];
+                        }
+                    }
+                    if(count > 0) {
+                        int rgb = colors[id + 1];
+                        red += count * ((rgb >> 16) & 0xff);
+                        green += count * ((rgb >> 8) & 0xff);
+                        blue += count * (rgb & 0xff);
+                        empty -= count;
+                    }
+                }
+                red += empty * ((EMPTY_RGB >> 16) & 0xff);
+                green += empty * ((EMPTY_RGB >> 8) & 0xff);
+                blue += empty * (EMPTY_RGB & 0xff);
+                pixels[base + x] = (red / area) << 16 | (green / area) << 8 | (blue / area);
+            }
+        }
+    }
+
+    private int colorOf(byte code)
+    {
+        return code >= 0 && code < colors.length ? colors[code] : UNKNOWN_RGB;
+    }
+
+    /**
+     * @return The number of cells at least partly under a number of pixels.
+     */
+    private int cellsUnder(int pixels)
+    {
+        return zoom >= 0 ? ((pixels - 1) >> zoom) + 1 : pixels << -zoom;
+    }
+
+    /**
+     * @return The number of cells covered by a number of pixels.
+     */
+    private int toCells(int pixels)
+    {
+        return zoom >= 0 ? pixels >> zoom : pixels << -zoom;
+    }
+
+    /**
+     * Keep the window over the grid. Zoomed out, keep the origin on a
+     * block boundary, so that blocks of a tile or more cover whole tiles.
+     */
+    private void clampOrigin()
+    {
+        SpeciesGrid grid = this.grid;
+        if(grid == null) {
+            return;
+        }
+        int rows = Math.max(0, grid.getDepth() - toCells(getHeight()));
+        int cols = Math.max(0, grid.getWidth() - toCells(getWidth()));
+        originRow = Math.max(0, Math.min(rows, originRow));
+        originCol = Math.max(0, Math.min(cols, originCol));
+        if(zoom < 0) {
+            originRow &= -(1 << -zoom);
+            originCol &= -(1 << -zoom);
+        }
+    }
+}
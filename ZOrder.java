@@ -0,0 +1,40 @@
+package sim;
+
+/**
+ * Morton (Z-order) keys for field locations. Sorting locations by key
+ * keeps cells that are close in the field close in the order, in both
+ * directions, so walking animals in key order touches the field a small
+ * block at a time.
+ *
+ * @author agent
+ * @version 2026.10.18
+ */
+public class ZOrder
+{
+    private ZOrder()
+    {
+    }
+
+    /**
+     * @param row A row, from 0 to 65535.
+     * @param col A column, from 0 to 65535.
+     * @return The key of the location: the bits of row and col interleaved.
+     */
+    public static int encode(int row, int col)
+    {
+        return (spread(row) << 1) | spread(col);
+    }
+
+    /**
+     * Spread the low 16 bits of a value out to the even bits.
+     */
+    private static int spread(int value)
+    {
+        value &= 0xffff;
+        value = (value | (value << 8)) & 0x00ff00ff;
+        value = (value | (value << 4)) & 0x0f0f0f0f;
+        value = (value | (value << 2)) & 0x33333333;
+        value = (value | (value << 1)) & 0x55555555;
+        return value;
+    }
+}